@@ -0,0 +1,21 @@
+package thespeace.springdb.rowmapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <h2>컴파일 시점에 RowMapper 생성</h2>
+ * 이 애노테이션을 붙인 클래스마다 RowMapperProcessor 가 같은 패키지에 {@code <클래스명>RowMapper} 를 생성한다.
+ * <ul>
+ *     <li>필드 선언 순서대로 컬럼을 인덱스로 읽고 setter 를 직접 호출한다. 리플렉션이나 컬럼 이름 매칭을 하지 않는다.</li>
+ *     <li>컬럼 이름은 {@code @Column(name)} 이 있으면 그 값을, 없으면 필드 이름을 언더스코어 표기법으로 바꿔서 사용한다.
+ *         생성된 클래스의 {@code COLUMNS} 상수를 SELECT 절에 그대로 사용하면 순서가 어긋나지 않는다.</li>
+ *     <li>static, transient, {@code @Transient} 필드는 제외한다.</li>
+ * </ul>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface GeneratedRowMapper {
+}
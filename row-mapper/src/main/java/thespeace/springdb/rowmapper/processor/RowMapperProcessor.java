@@ -0,0 +1,197 @@
+package thespeace.springdb.rowmapper.processor;
+
+import thespeace.springdb.rowmapper.GeneratedRowMapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * <h2>{@link GeneratedRowMapper} 애노테이션 프로세서</h2>
+ * Querydsl 이 엔티티마다 Q클래스를 만드는 것처럼, 컴파일 시점에 엔티티마다 {@code RowMapper} 구현체를 만든다.
+ * <ul>
+ *     <li>BeanPropertyRowMapper 는 생성할 때마다 클래스를 다시 분석하고, 행마다 컬럼 이름으로 프로퍼티를 찾아서
+ *         리플렉션(BeanWrapper)으로 값을 넣는다.</li>
+ *     <li>생성된 RowMapper 는 {@code rs.getLong(1)} 처럼 인덱스로 읽고 setter 를 직접 호출하는 평범한 자바 코드라서
+ *         JIT 이 그대로 인라인할 수 있다.</li>
+ *     <li>래퍼 타입(Long, Integer 등)은 기본형으로 읽은 뒤 {@code wasNull()} 로 null 을 구분한다.</li>
+ * </ul>
+ * setter 는 Lombok 처럼 다른 애노테이션 프로세서가 만들어도 되므로 여기서 존재 여부를 검사하지 않는다.
+ * 생성된 코드를 컴파일할 때 setter 가 없으면 컴파일 오류가 난다.
+ */
+@SupportedAnnotationTypes("thespeace.springdb.rowmapper.GeneratedRowMapper")
+public class RowMapperProcessor extends AbstractProcessor {
+
+    private static final String COLUMN = "jakarta.persistence.Column";
+    private static final String TRANSIENT = "jakarta.persistence.Transient";
+
+    //래퍼 타입 → ResultSet 에서 기본형으로 읽을 때 사용하는 메서드 이름
+    private static final Map<String, String> BOXED_GETTERS = Map.of(
+            "java.lang.Long", "getLong",
+            "java.lang.Integer", "getInt",
+            "java.lang.Short", "getShort",
+            "java.lang.Byte", "getByte",
+            "java.lang.Boolean", "getBoolean",
+            "java.lang.Double", "getDouble",
+            "java.lang.Float", "getFloat");
+
+    private static final Map<String, String> OBJECT_GETTERS = Map.of(
+            "java.lang.String", "getString",
+            "java.math.BigDecimal", "getBigDecimal");
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GeneratedRowMapper.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "@GeneratedRowMapper 는 클래스에만 사용할 수 있습니다.", element);
+                continue;
+            }
+            generate((TypeElement) element);
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        List<VariableElement> fields = ElementFilter.fieldsIn(type.getEnclosedElements()).stream()
+                .filter(field -> !field.getModifiers().contains(Modifier.STATIC))
+                .filter(field -> !field.getModifiers().contains(Modifier.TRANSIENT))
+                .filter(field -> annotation(field, TRANSIENT) == null)
+                .collect(Collectors.toList());
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String typeName = type.getSimpleName().toString();
+        String mapperName = typeName + "RowMapper";
+
+        List<String> columns = new ArrayList<>();
+        for (VariableElement field : fields) {
+            columns.add(columnName(field));
+        }
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(packageName + "." + mapperName, type).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("import java.sql.ResultSet;");
+            out.println("import java.sql.SQLException;");
+            out.println("import javax.annotation.processing.Generated;");
+            out.println("import org.springframework.jdbc.core.RowMapper;");
+            out.println();
+            out.println("/**");
+            out.println(" * {@link " + typeName + "} 의 RowMapper. SELECT 절은 {@link #COLUMNS} 순서를 따라야 한다.");
+            out.println(" */");
+            out.println("@Generated(\"" + RowMapperProcessor.class.getName() + "\")");
+            out.println("public final class " + mapperName + " implements RowMapper<" + typeName + "> {");
+            out.println();
+            out.println("    public static final String COLUMNS = \"" + String.join(", ", columns) + "\";");
+            out.println();
+            out.println("    public static final " + mapperName + " INSTANCE = new " + mapperName + "();");
+            out.println();
+            out.println("    private " + mapperName + "() {");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " mapRow(ResultSet rs, int rowNum) throws SQLException {");
+            out.println("        " + typeName + " target = new " + typeName + "();");
+            for (int i = 0; i < fields.size(); i++) {
+                out.println(readColumn(fields.get(i), i + 1));
+            }
+            out.println("        return target;");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String readColumn(VariableElement field, int index) {
+        String setter = "target.set" + capitalize(field.getSimpleName().toString());
+        TypeMirror fieldType = field.asType();
+
+        if (fieldType.getKind().isPrimitive()) {
+            return "        " + setter + "(rs.get" + capitalize(fieldType.toString()) + "(" + index + "));";
+        }
+
+        String typeName = processingEnv.getTypeUtils().erasure(fieldType).toString();
+        String boxedGetter = BOXED_GETTERS.get(typeName);
+        if (boxedGetter != null) {
+            String variable = "c" + index;
+            String primitive = processingEnv.getTypeUtils()
+                    .unboxedType(fieldType).getKind().name().toLowerCase();
+            return "        " + primitive + " " + variable + " = rs." + boxedGetter + "(" + index + ");\n"
+                    + "        " + setter + "(rs.wasNull() ? null : " + variable + ");";
+        }
+
+        String objectGetter = OBJECT_GETTERS.get(typeName);
+        if (objectGetter != null) {
+            return "        " + setter + "(rs." + objectGetter + "(" + index + "));";
+        }
+        if (fieldType.getKind() == TypeKind.DECLARED) {
+            return "        " + setter + "(rs.getObject(" + index + ", " + typeName + ".class));";
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "RowMapper 를 생성할 수 없는 필드 타입입니다 : " + fieldType, field);
+        return "";
+    }
+
+    private String columnName(VariableElement field) {
+        AnnotationMirror column = annotation(field, COLUMN);
+        if (column != null) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : column.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("name")) {
+                    String name = entry.getValue().getValue().toString();
+                    if (!name.isEmpty()) {
+                        return name;
+                    }
+                }
+            }
+        }
+        return snakeCase(field.getSimpleName().toString());
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().toString().equals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static String snakeCase(String name) {
+        StringBuilder result = new StringBuilder();
+        for (char ch : name.toCharArray()) {
+            if (Character.isUpperCase(ch)) {
+                result.append('_').append(Character.toLowerCase(ch));
+            } else {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
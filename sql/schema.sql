@@ -1,15 +1,34 @@
 # 테이블 생성
+drop table if exists item_name_gram CASCADE;
 drop table if exists item CASCADE;
+drop sequence if exists item_seq;
+create sequence item_seq start with 1 increment by 50;
 create table item
 (
-    id        bigint generated by default as identity,
+    id        bigint not null,
     item_name varchar(10),
     price     integer,
     quantity  integer,
     primary key (id)
 );
+create table item_name_gram
+(
+    gram    varchar(3) not null,
+    item_id bigint     not null,
+    primary key (gram, item_id)
+);
+create index item_name_gram_item_id on item_name_gram (item_id);
 # generated by default as identity : identity 전략이라고 하는데, 기본 키 생성을 데이터베이스에 위임하는 방법이다.( == MySQL의 Auto Increment)
+# item_seq : identity 대신 시퀀스를 사용한다. 애플리케이션이 increment by(50) 만큼 id 블록을 받아서 INSERT 전에 id 를 채운다.
+# item_name_gram : 상품명의 3글자 조각(n-gram)과 상품 id. like '%검색어%' 대신 (gram, item_id) 기본 키로 후보를 찾는다.(ItemNameGrams 참고)
+#                  item_id 인덱스는 상품명을 수정할 때 이전 n-gram 을 지우기 위해 사용한다.
 
 
 # 테스트 등록 쿼리
-insert into item(item_name, price, quantity) values ('ItemTest', 10000, 10);
\ No newline at end of file
+insert into item(id, item_name, price, quantity) values (next value for item_seq, 'ItemTest', 10000, 10);
+
+# 이미 있는 상품의 n-gram 채우기 (상품명 최대 길이 10 이므로 시작 위치는 1~8)
+insert into item_name_gram(gram, item_id)
+select distinct substring(item_name, x, 3), id
+from item, system_range(1, 8)
+where x + 2 <= char_length(item_name);
@@ -0,0 +1,21 @@
+package thespeace.springdb.benchmark;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+
+/**
+ * <h2>벤치마크용 스프링 부트 설정</h2>
+ * SpringDbApplication 은 {@code @Import} 로 설정이 하나로 고정되어 있어서, 벤치마크에서는 이 클래스에 측정할
+ * 설정(MemoryConfig, JdbcTemplateV1Config ...)을 추가로 넘겨서 컨텍스트를 만든다.
+ * <ul>
+ *     <li>컴포넌트 스캔은 하지 않는다. 컨트롤러 없이 ItemService, ItemRepository 만 등록된다.</li>
+ *     <li>@AutoConfigurationPackage : 엔티티(Item), 스프링 데이터 JPA 리포지토리, MyBatis 매퍼를 찾을 기준 패키지를
+ *         SpringDbApplication 과 같은 thespeace.springdb 로 지정한다.</li>
+ * </ul>
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@AutoConfigurationPackage(basePackages = "thespeace.springdb")
+public class BenchmarkApplication {
+}
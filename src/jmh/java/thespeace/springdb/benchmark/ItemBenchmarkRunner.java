@@ -0,0 +1,48 @@
+package thespeace.springdb.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * <h2>벤치마크 실행</h2>
+ * JMH 의 스레드 수는 실행 한 번에 하나만 지정할 수 있으므로, 스레드 수마다 {@link ItemRepositoryBenchmark} 를 실행한다.
+ * <ul>
+ *     <li>args[0] : 스레드 수 목록(예: 1,4,8)</li>
+ *     <li>args[1] : 측정할 backend 목록. 비어 있으면 {@code @Param} 의 기본값 전부.</li>
+ *     <li>args[2] : datasetSize 목록. 비어 있으면 {@code @Param} 의 기본값 전부.</li>
+ *     <li>args[3] : 결과(JSON)를 저장할 디렉토리</li>
+ * </ul>
+ * gc 프로파일러를 함께 사용해서 연산당 할당량(gc.alloc.rate.norm)과 할당률(gc.alloc.rate)을 기록한다.
+ */
+public class ItemBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String[] threadCounts = args[0].split(",");
+        String backends = args.length > 1 ? args[1] : "";
+        String datasetSizes = args.length > 2 ? args[2] : "";
+        File resultDir = new File(args.length > 3 ? args[3] : "build/reports/jmh");
+        resultDir.mkdirs();
+
+        for (String threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(ItemRepositoryBenchmark.class.getSimpleName())
+                    .threads(Integer.parseInt(threads.trim()))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDir, "items-threads-" + threads.trim() + ".json").getPath());
+            if (!backends.isBlank()) {
+                options.param("backend", backends.split(","));
+            }
+            if (!datasetSizes.isBlank()) {
+                options.param("datasetSize", datasetSizes.split(","));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package thespeace.springdb.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import thespeace.springdb.config.*;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.service.ItemService;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h2>ItemRepository 구현체별 벤치마크</h2>
+ * SpringDbApplication 의 {@code @Import} 를 바꿔가며 사용하는 설정들을 같은 조건에서 측정한다.
+ * <ul>
+ *     <li>backend : 측정할 설정. 설정마다 임베디드 H2(메모리 모드)를 사용하는 스프링 컨텍스트를 새로 띄운다.</li>
+ *     <li>datasetSize : 측정 전에 미리 저장해 두는 상품 수.</li>
+ *     <li>save, update, findById 와 ItemSearchCond 의 네 가지 모양(조건 없음, 상품명, 최대 가격, 둘 다)을 측정한다.</li>
+ *     <li>애플리케이션에서 실제로 호출하는 경로와 같도록 ItemService 를 통해서 호출한다.
+ *         (V2Config 는 ItemServiceV2 로 스프링 데이터 JPA 와 Querydsl 을 함께 사용한다.)</li>
+ *     <li>save 는 측정하는 동안 데이터가 계속 늘어나므로, 다른 측정보다 뒤쪽 반복에서 데이터가 조금 더 많다.</li>
+ *     <li>mixedReadWrite : 저장 20%, 수정 10%, 단건 조회 70% 를 섞은 부하. 스레드 수를 바꿔가며 실행해서 쓰기와 읽기가
+ *         섞였을 때 처리량이 코어 수에 따라 늘어나는지 본다.</li>
+ *     <li>memory, columnar, mappedLog 는 데이터를 힙에 두므로, 준비 단계에서 datasetSize 개를 저장하는 동안 늘어난 힙
+ *         사용량(GC 직후 기준)을 상품당 바이트로 출력한다.</li>
+ * </ul>
+ * 스레드 수와 할당률(gc 프로파일러)은 {@link ItemBenchmarkRunner} 에서 지정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemRepositoryBenchmark {
+
+    private static final Map<String, Class<?>> BACKENDS = Map.ofEntries(
+            Map.entry("memory", MemoryConfig.class),
+            Map.entry("columnar", ColumnarMemoryConfig.class),
+            Map.entry("mappedLog", MappedLogConfig.class),
+            Map.entry("jdbcV1", JdbcTemplateV1Config.class),
+            Map.entry("jdbcV2", JdbcTemplateV2Config.class),
+            Map.entry("jdbcV3", JdbcTemplateV3Config.class),
+            Map.entry("mybatis", MyBatisConfig.class),
+            Map.entry("jpa", JpaConfig.class),
+            Map.entry("springDataJpa", SpringDataJpaConfig.class),
+            Map.entry("querydsl", QuerydslConfig.class),
+            Map.entry("v2", V2Config.class));
+
+    private static final Set<String> HEAP_BACKENDS = Set.of("memory", "columnar", "mappedLog");
+
+    private static final int NAME_CARDINALITY = 1000;
+    private static final int MAX_PRICE = 100_000;
+
+    @Param({"memory", "columnar", "mappedLog", "jdbcV1", "jdbcV2", "jdbcV3",
+            "mybatis", "jpa", "springDataJpa", "querydsl", "v2"})
+    private String backend;
+
+    @Param({"1000", "100000"})
+    private int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private ItemService itemService;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Class<?> config = BACKENDS.get(backend);
+        if (config == null) {
+            throw new IllegalArgumentException("알 수 없는 backend : " + backend);
+        }
+        if (config == MappedLogConfig.class) {
+            //이전 실행에서 남은 로그 파일을 지우고 빈 상태에서 시작한다.
+            FileSystemUtils.deleteRecursively(Path.of(System.getProperty("java.io.tmpdir"), "spring-db-benchmark").toFile());
+        }
+
+        context = new SpringApplicationBuilder(BenchmarkApplication.class, config)
+                .web(WebApplicationType.NONE)
+                .properties("spring.config.name=benchmark")
+                .run();
+        itemService = context.getBean(ItemService.class);
+
+        long heapBefore = usedHeap();
+        for (int i = 0; i < datasetSize; i++) {
+            Item item = itemService.save(newItem(i));
+            if (i == 0) {
+                firstId = item.getId();
+            }
+        }
+        if (HEAP_BACKENDS.contains(backend)) {
+            long footprint = usedHeap() - heapBefore;
+            System.out.printf("%n[%s] rows=%d, heap=%dKB (%d bytes/row)%n",
+                    backend, datasetSize, footprint / 1024, footprint / datasetSize);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Item save() {
+        return itemService.save(newItem(ThreadLocalRandom.current().nextInt(datasetSize)));
+    }
+
+    @Benchmark
+    public void update() {
+        int i = ThreadLocalRandom.current().nextInt(datasetSize);
+        itemService.update(firstId + i, new ItemUpdateDto(itemName(i), price(i + 1), i));
+    }
+
+    @Benchmark
+    public Optional<Item> findById() {
+        return itemService.findById(firstId + ThreadLocalRandom.current().nextInt(datasetSize));
+    }
+
+    @Benchmark
+    public Object mixedReadWrite() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int op = random.nextInt(10);
+        int i = random.nextInt(datasetSize);
+        if (op < 2) {
+            return itemService.save(newItem(i));
+        }
+        if (op < 3) {
+            itemService.update(firstId + i, new ItemUpdateDto(itemName(i), price(i + 1), i));
+            return null;
+        }
+        return itemService.findById(firstId + i);
+    }
+
+    @Benchmark
+    public List<Item> findAllWithoutCond() {
+        return itemService.findItems(new ItemSearchCond());
+    }
+
+    /**
+     * 상품명 조건. 이름 종류({@value #NAME_CARDINALITY}개) 중 1% 정도가 검색어를 포함한다.
+     */
+    @Benchmark
+    public List<Item> findAllByItemName() {
+        return itemService.findItems(new ItemSearchCond(itemName(ThreadLocalRandom.current().nextInt(100)), null));
+    }
+
+    /**
+     * 최대 가격 조건. 가격은 0 ~ {@value #MAX_PRICE} 에 고르게 퍼져 있으므로 1% 정도가 조건에 맞는다.
+     */
+    @Benchmark
+    public List<Item> findAllByMaxPrice() {
+        return itemService.findItems(new ItemSearchCond(null, MAX_PRICE / 100));
+    }
+
+    @Benchmark
+    public List<Item> findAllByItemNameAndMaxPrice() {
+        return itemService.findItems(new ItemSearchCond(itemName(ThreadLocalRandom.current().nextInt(100)), MAX_PRICE / 2));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static Item newItem(int i) {
+        return new Item(itemName(i), price(i), i % 100);
+    }
+
+    private static String itemName(int i) {
+        return "item" + (i % NAME_CARDINALITY);
+    }
+
+    private static int price(int i) {
+        return (int) ((i * 7919L) % MAX_PRICE); //id 순서와 가격 순서가 겹치지 않도록 섞는다.
+    }
+}
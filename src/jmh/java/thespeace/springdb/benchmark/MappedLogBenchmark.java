@@ -0,0 +1,202 @@
+package thespeace.springdb.benchmark;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import thespeace.springdb.config.JdbcTemplateV3Config;
+import thespeace.springdb.config.MappedLogConfig;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.file.MappedLogItemRepository;
+import thespeace.springdb.service.ItemService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * <h2>MappedLogItemRepository 와 H2(TCP) 비교</h2>
+ * <ul>
+ *     <li>save, update : 쓰기 한 건의 지연 시간 분포(SampleTime, p50/p99/p999). store 마다 ItemService 를 통해서 호출한다.
+ *         <ul>
+ *             <li>mappedLog : MappedLogConfig. 로그 파일은 임시 디렉토리에 만든다.</li>
+ *             <li>h2Tcp : 애플리케이션의 기본 설정과 같은 구성. 같은 JVM 에 H2 TCP 서버(파일 DB)를 띄우고
+ *                 JdbcTemplateV3Config(HikariCP)로 접속한다.</li>
+ *             <li>H2 는 커밋마다 디스크에 force 하지 않으므로 mappedLog 도 item.log.sync-on-write=false 로 비교한다.</li>
+ *         </ul>
+ *     </li>
+ *     <li>restart : items 개를 저장해 둔 로그, 스냅샷 파일로 MappedLogItemRepository 를 다시 여는 시간(스냅샷 + 로그 꼬리 복구).
+ *         매번 저장해 둔 파일을 복사해서 같은 상태에서 시작한다.</li>
+ * </ul>
+ * 실행 : {@code ./gradlew jmhMappedLog}
+ */
+@Fork(1)
+public class MappedLogBenchmark {
+
+    private static final int PRELOADED_ITEMS = 10_000;
+    private static final long RESTART_SNAPSHOT_THRESHOLD = 16L * 1024 * 1024; //로그 꼬리가 남도록 items 보다 작게 잡는다.
+
+    @State(Scope.Benchmark)
+    public static class WriteState {
+
+        @Param({"mappedLog", "h2Tcp"})
+        private String store;
+
+        private Path directory;
+        private Server h2Server;
+        private ConfigurableApplicationContext context;
+        private ItemService itemService;
+        private long firstId;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, SQLException {
+            directory = Files.createTempDirectory("mapped-log-benchmark");
+            SpringApplicationBuilder builder = new SpringApplicationBuilder(BenchmarkApplication.class)
+                    .web(WebApplicationType.NONE);
+            if ("mappedLog".equals(store)) {
+                builder.sources(MappedLogConfig.class)
+                        .properties("spring.config.name=benchmark",
+                                "item.log.dir=" + directory,
+                                "item.log.sync-on-write=false");
+            } else if ("h2Tcp".equals(store)) {
+                int port = freePort();
+                h2Server = Server.createTcpServer("-tcpPort", String.valueOf(port),
+                        "-baseDir", directory.toString(), "-ifNotExists").start();
+                builder.sources(JdbcTemplateV3Config.class)
+                        .properties("spring.config.name=benchmark",
+                                "spring.datasource.url=jdbc:h2:tcp://localhost:" + port + "/items");
+            } else {
+                throw new IllegalArgumentException("알 수 없는 store : " + store);
+            }
+            context = builder.run();
+            itemService = context.getBean(ItemService.class);
+
+            List<Item> saved = itemService.saveAll(IntStream.range(0, PRELOADED_ITEMS).mapToObj(MappedLogBenchmark::newItem).toList());
+            firstId = saved.get(0).getId();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            context.close();
+            if (h2Server != null) {
+                h2Server.stop();
+            }
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RestartState {
+
+        @Param({"1000000"})
+        private int items;
+
+        private Path source;
+        private Path directory;
+        private MappedLogItemRepository saved;
+        private MappedLogItemRepository restarted;
+
+        /**
+         * 저장소를 닫지 않은 상태(스냅샷 + 로그 꼬리)를 만들어 둔다. 닫으면 스냅샷만 남는다.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            source = Files.createTempDirectory("mapped-log-restart-source");
+            directory = Files.createTempDirectory("mapped-log-restart");
+            saved = new MappedLogItemRepository(source, RESTART_SNAPSHOT_THRESHOLD, false);
+            for (int from = 0; from < items; from += PRELOADED_ITEMS) {
+                saved.saveAll(IntStream.range(from, Math.min(from + PRELOADED_ITEMS, items)).mapToObj(MappedLogBenchmark::newItem).toList());
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void copyFiles() throws IOException {
+            try (Stream<Path> files = Files.list(source)) {
+                for (Path file : files.toList()) {
+                    Files.copy(file, directory.resolve(file.getFileName()), REPLACE_EXISTING);
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeRestarted() {
+            restarted.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            saved.close();
+            FileSystemUtils.deleteRecursively(source);
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Item save(WriteState state) {
+        return state.itemService.save(newItem(ThreadLocalRandom.current().nextInt(PRELOADED_ITEMS)));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void update(WriteState state) {
+        int i = ThreadLocalRandom.current().nextInt(PRELOADED_ITEMS);
+        state.itemService.update(state.firstId + i, new ItemUpdateDto("item" + i, i + 1, i));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public MappedLogItemRepository restart(RestartState state) {
+        state.restarted = new MappedLogItemRepository(state.directory, RESTART_SNAPSHOT_THRESHOLD, false);
+        return state.restarted;
+    }
+
+    private static Item newItem(int i) {
+        return new Item("item" + (i % 1000), i % 100_000, i % 100);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * args[0] : 결과(JSON)를 저장할 디렉토리
+     */
+    public static void main(String[] args) throws RunnerException {
+        File resultDir = new File(args.length > 0 ? args[0] : "build/reports/jmh");
+        resultDir.mkdirs();
+        new Runner(new OptionsBuilder()
+                .include(MappedLogBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(resultDir, "mapped-log.json").getPath())
+                .build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package thespeace.springdb.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.domain.ItemRowMapper;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import java.io.File;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * <h2>RowMapper 벤치마크</h2>
+ * BeanPropertyRowMapper 와 애노테이션 프로세서가 생성한 ItemRowMapper 의 변환 비용만 비교한다.
+ * <ul>
+ *     <li>조회 결과를 CachedRowSet 에 미리 담아 두고 매번 처음으로 되돌려서 변환하므로, 데이터베이스와 드라이버 비용은
+ *         포함되지 않는다.</li>
+ *     <li>BeanPropertyRowMapper 는 리포지토리에서 쓰던 것처럼 조회할 때마다 {@code newInstance()} 로 만든다.</li>
+ *     <li>점수는 조회 한 번(rows 건 변환) 시간이다. 행당 비용은 점수를 rows 로 나누면 된다.</li>
+ * </ul>
+ * 실행 : {@code ./gradlew jmhRowMapper}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private CachedRowSet rowSet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        JdbcTemplate template = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:rowmapper-" + rows + ";DB_CLOSE_DELAY=-1"));
+        template.execute("create table if not exists item (id bigint not null, item_name varchar(10), price integer, quantity integer, primary key (id))");
+        template.execute("truncate table item");
+        template.batchUpdate("insert into item values (?, ?, ?, ?)", IntStream.range(0, rows)
+                .mapToObj(i -> new Object[]{i + 1L, "item" + (i % 1000), i % 100_000, i % 100})
+                .toList());
+
+        rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        template.query("select " + ItemRowMapper.COLUMNS + " from item order by id", rs -> {
+            rowSet.populate(rs);
+            return null;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        rowSet.close();
+    }
+
+    @Benchmark
+    public List<Item> beanPropertyRowMapper() throws SQLException {
+        rowSet.beforeFirst();
+        return new RowMapperResultSetExtractor<>(BeanPropertyRowMapper.newInstance(Item.class)).extractData(rowSet);
+    }
+
+    @Benchmark
+    public List<Item> generatedRowMapper() throws SQLException {
+        rowSet.beforeFirst();
+        return new RowMapperResultSetExtractor<>(ItemRowMapper.INSTANCE).extractData(rowSet);
+    }
+
+    /**
+     * args[0] : 결과(JSON)를 저장할 디렉토리
+     */
+    public static void main(String[] args) throws RunnerException {
+        File resultDir = new File(args.length > 0 ? args[0] : "build/reports/jmh");
+        resultDir.mkdirs();
+        new Runner(new OptionsBuilder()
+                .include(RowMapperBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(resultDir, "row-mapper.json").getPath())
+                .build()).run();
+    }
+}
@@ -0,0 +1,156 @@
+package thespeace.springdb.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+import thespeace.springdb.config.JdbcTemplateV3Config;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.reactive.ReactiveItemApplication;
+import thespeace.springdb.reactive.repository.ReactiveItemRepository;
+import thespeace.springdb.service.ItemService;
+import thespeace.springdb.web.ItemController;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * <h2>서블릿 + JDBC 와 WebFlux + R2DBC 비교</h2>
+ * 같은 검색(/items/export?itemName=...)을 concurrency 개 동시에 보내고 모두 끝날 때까지의 시간을 잰다.
+ * <ul>
+ *     <li>servlet : 톰캣 + ItemController + ItemServiceV1 + JdbcTemplateItemRepositoryV3(HikariCP).</li>
+ *     <li>reactive : Netty + ReactiveItemController + R2dbcItemRepository(r2dbc-pool).</li>
+ *     <li>둘 다 같은 JVM 의 임베디드 H2(메모리 모드)에 datasetSize 개를 저장해 두고, 커넥션 풀 크기는 10 으로 같다.</li>
+ *     <li>CSV 를 한 줄씩 응답에 쓰는 경로라서 두 스택 모두 결과를 메모리에 모으지 않는다.</li>
+ *     <li>톰캣은 요청마다 스레드를 하나씩 쓰므로(기본 200개) 그보다 많은 요청은 대기열에서 기다린다. 리액티브는 이벤트 루프
+ *         스레드(CPU 코어 수)로 모든 요청을 받고 커넥션 풀에서 기다린다.</li>
+ *     <li>r2dbc-h2 는 내부에서 H2 를 블로킹으로 호출하므로, 네트워크 드라이버를 쓰는 운영 환경보다 리액티브에 불리하다.</li>
+ * </ul>
+ * 실행 : {@code ./gradlew jmhReactive -PjmhConcurrency=100,1000}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ServletVsReactiveBenchmark {
+
+    private static final int NAME_CARDINALITY = 1000;
+    private static final int MAX_PRICE = 100_000;
+
+    @Param({"servlet", "reactive"})
+    private String stack;
+
+    @Param({"100", "1000"})
+    private int concurrency;
+
+    @Param({"10000"})
+    private int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("servlet".equals(stack)) {
+            context = new SpringApplicationBuilder(BenchmarkApplication.class, JdbcTemplateV3Config.class, ItemController.class)
+                    .web(WebApplicationType.SERVLET)
+                    .properties("spring.config.name=benchmark", "server.port=0",
+                            "server.tomcat.accept-count=" + concurrency) //동시에 여는 연결이 거절되지 않도록
+                    .run();
+            ItemService itemService = context.getBean(ItemService.class);
+            itemService.saveAll(IntStream.range(0, datasetSize).mapToObj(ServletVsReactiveBenchmark::newItem).toList());
+        } else if ("reactive".equals(stack)) {
+            context = ReactiveItemApplication.builder()
+                    .properties("server.port=0",
+                            "spring.r2dbc.url=r2dbc:h2:mem:///reactive-benchmark?options=DB_CLOSE_DELAY=-1",
+                            "spring.sql.init.mode=always",
+                            "spring.sql.init.schema-locations=classpath:benchmark-schema.sql",
+                            "spring.main.banner-mode=off",
+                            "logging.level.root=warn",
+                            "logging.level.org.springframework.r2dbc=warn")
+                    .run();
+            ReactiveItemRepository itemRepository = context.getBean(ReactiveItemRepository.class);
+            Flux.range(0, datasetSize)
+                    .concatMap(i -> itemRepository.save(newItem(i)))
+                    .then()
+                    .block();
+        } else {
+            throw new IllegalArgumentException("알 수 없는 stack : " + stack);
+        }
+
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 상품명 검색. 이름 종류({@value #NAME_CARDINALITY}개) 중 1% 정도가 검색어를 포함한다.
+     */
+    @Benchmark
+    public long searchConcurrently() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            URI uri = URI.create(baseUrl + "/items/export?itemName=" + itemName(ThreadLocalRandom.current().nextInt(100)));
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding()));
+        }
+        long ok = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            int status = response.join().statusCode();
+            if (status != 200) {
+                throw new IllegalStateException(stack + " responded " + status);
+            }
+            ok++;
+        }
+        return ok;
+    }
+
+    private static Item newItem(int i) {
+        return new Item(itemName(i), price(i), i % 100);
+    }
+
+    private static String itemName(int i) {
+        return "item" + (i % NAME_CARDINALITY);
+    }
+
+    private static int price(int i) {
+        return (int) ((i * 7919L) % MAX_PRICE);
+    }
+
+    /**
+     * args[0] : 결과(JSON)를 저장할 디렉토리, args[1] : concurrency 목록(비어 있으면 {@code @Param} 기본값)
+     */
+    public static void main(String[] args) throws RunnerException {
+        File resultDir = new File(args.length > 0 ? args[0] : "build/reports/jmh");
+        resultDir.mkdirs();
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(ServletVsReactiveBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(resultDir, "servlet-vs-reactive.json").getPath());
+        if (args.length > 1 && !args[1].isBlank()) {
+            options.param("concurrency", args[1].split(","));
+        }
+        new Runner(options.build()).run();
+    }
+}
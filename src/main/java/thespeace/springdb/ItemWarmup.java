@@ -0,0 +1,114 @@
+package thespeace.springdb;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.service.ItemService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h2>시작 시 데이터 접근 경로 예열(warm-up)</h2>
+ * 배포 직후 첫 요청들은 느리다. SimpleJdbcInsert 는 첫 INSERT 때 테이블 메타데이터를 조회하고, MyBatis, 하이버네이트,
+ * QueryShapeRegistry 는 처음 보는 쿼리를 이때 해석하며, JIT 도 아직 컴파일하지 않은 상태이기 때문이다.<br>
+ * 트래픽을 받기 전에 ItemService 의 경로를 미리 실행해서 이 비용을 시작 시간으로 옮긴다.
+ *
+ * <h2>실행 시점</h2>
+ * <ul>
+ *     <li>ApplicationRunner 는 컨텍스트가 준비된 뒤, ApplicationReadyEvent(TestDataInit) 보다 먼저 실행된다.</li>
+ *     <li>스프링 부트는 모든 ApplicationRunner 가 끝난 뒤에 ReadinessState.ACCEPTING_TRAFFIC 을 발행하므로, 예열이 끝나기 전에는
+ *         /actuator/health/readiness 가 OUT_OF_SERVICE 이다. 로드밸런서나 쿠버네티스는 이 때까지 요청을 보내지 않는다.</li>
+ * </ul>
+ *
+ * <h2>예열하는 경로</h2>
+ * <ul>
+ *     <li>findItems, findItemList : 검색 모양(QueryShapeRegistry 참고)마다 한 번씩. 결과가 거의 없도록 size=1 또는 맞는 상품이 없는 값을 쓴다.
+ *         조건이 하나도 없고 size 도 없는 검색은 테이블 전체를 읽으므로 제외한다.</li>
+ *     <li>forEachItem, findById</li>
+ *     <li>writePaths 가 true 이면 save, saveAll, update 도 실행한다. 모든 작업은 하나의 트랜잭션 안에서 실행하고 마지막에
+ *         롤백한다. 시퀀스는 롤백되지 않으므로 id 에 빈 번호가 생긴다.</li>
+ * </ul>
+ * 메모리, 파일 저장소(MemoryConfig, ColumnarMemoryConfig, MappedLogConfig)는 트랜잭션에 참여하지 않아서 롤백해도
+ * 저장한 상품이 남는다(파일 저장소는 재시작 후에도 남는다). 그래서 writePaths 는 기본값이 false 이고, 트랜잭션에 참여하는
+ * 설정에서만 켠다.
+ */
+@Slf4j
+public class ItemWarmup implements ApplicationRunner {
+
+    private static final String NO_MATCH_NAME = "\u0000warmup";
+    private static final String NO_MATCH_SHORT_NAME = "\u0000w"; //n-gram 색인을 쓰지 않는 짧은 상품명
+
+    private final ItemService itemService;
+    private final TransactionTemplate transactionTemplate;
+    private final int iterations;
+    private final boolean writePaths;
+
+    public ItemWarmup(ItemService itemService, PlatformTransactionManager transactionManager,
+                      int iterations, boolean writePaths) {
+        this.itemService = itemService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.iterations = iterations;
+        this.writePaths = writePaths;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        List<ItemSearchCond> shapes = searchShapes();
+
+        for (int i = 0; i < iterations; i++) {
+            transactionTemplate.executeWithoutResult(status -> {
+                status.setRollbackOnly(); //예열에서 변경한 데이터는 남기지 않는다.
+                warmUp(shapes);
+            });
+        }
+
+        log.info("warm-up finished iterations={}, shapes={}, writePaths={}, elapsed={}ms",
+                iterations, shapes.size(), writePaths, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void warmUp(List<ItemSearchCond> shapes) {
+        for (ItemSearchCond cond : shapes) {
+            itemService.findItems(cond);
+            itemService.findItemList(cond);
+        }
+        itemService.forEachItem(new ItemSearchCond(NO_MATCH_NAME, null), item -> {
+        });
+        itemService.findById(0L);
+
+        if (writePaths) {
+            Item item = itemService.save(new Item("warmup", 0, 0));
+            itemService.saveAll(List.of(new Item("warmup", 0, 0), new Item("warmup", 0, 0)));
+            itemService.update(item.getId(), new ItemUpdateDto("warmup", 1, 1));
+            itemService.findById(item.getId());
+        }
+    }
+
+    /**
+     * itemName(색인 사용, 짧은 이름), maxPrice, afterId, beforeId, size 의 모든 조합. 실제 데이터는 거의 읽지 않도록 값을 고른다.
+     */
+    private static List<ItemSearchCond> searchShapes() {
+        List<ItemSearchCond> shapes = new ArrayList<>();
+        for (int shape = 0; shape < 64; shape++) {
+            if ((shape & 32) != 0 && (shape & 1) == 0) {
+                continue; //짧은 이름은 이름이 있을 때만
+            }
+            String itemName = (shape & 1) == 0 ? null : (shape & 32) != 0 ? NO_MATCH_SHORT_NAME : NO_MATCH_NAME;
+            Integer maxPrice = (shape & 2) != 0 ? Integer.MIN_VALUE : null;
+            Long afterId = (shape & 4) != 0 ? Long.MAX_VALUE - 1 : null;
+            Long beforeId = (shape & 8) != 0 ? 1L : null;
+            Integer size = (shape & 16) != 0 ? 1 : null;
+            if (itemName == null && maxPrice == null && afterId == null && beforeId == null && size == null) {
+                continue; //조건 없는 전체 조회
+            }
+            shapes.add(new ItemSearchCond(itemName, maxPrice, afterId, beforeId, size));
+        }
+        return shapes;
+    }
+}
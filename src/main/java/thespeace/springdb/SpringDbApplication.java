@@ -1,16 +1,37 @@
 package thespeace.springdb;
 
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import thespeace.springdb.cache.ItemSecondLevelCache;
 import thespeace.springdb.config.*;
+import thespeace.springdb.datasource.ReplicaRoutingDataSource;
+import thespeace.springdb.metrics.HikariPoolSizer;
+import thespeace.springdb.metrics.ItemMetricsPostProcessor;
+import thespeace.springdb.metrics.QueryShapeMetrics;
+import thespeace.springdb.metrics.VirtualThreadPinningMonitor;
 import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.service.ItemService;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * <ul>
@@ -20,10 +41,26 @@ import javax.sql.DataSource;
  *     <li>@Profile("local") : 특정 프로필의 경우에만 해당 스프링 빈을 등록한다. 여기서는 local 이라는 이름의
  *     	   프로필이 사용되는 경우에만 testDataInit 이라는 스프링 빈을 등록한다. 이 빈은 앞서 본 것인데, 편의상
  *     	   초기 데이터를 만들어서 저장하는 빈이다.</li>
+ *     <li>itemMetricsPostProcessor : 어떤 설정을 Import 하더라도 ItemRepository, ItemService 호출을 Micrometer 로
+ *     	   측정한다. 빈 후처리기는 다른 빈보다 먼저 만들어져야 하므로 static 메서드로 등록한다.</li>
+ *     <li>queryShapeMetrics : 검색 쿼리를 모양별로 미리 만들어 두는 리포지토리(JdbcTemplate V1~V3, JPA)의 모양별 사용
+ *     	   횟수를 item.query.shape 메트릭으로 내보낸다.</li>
+ *     <li>itemWarmup : item.warmup.enabled=true 일 때만 등록한다. 트래픽을 받기 전(readiness 전)에 ItemService 의
+ *     	   경로를 롤백되는 트랜잭션 안에서 미리 실행한다.</li>
+ *     <li>hikariPoolSizer : item.pool.adaptive.enabled=true 일 때만 등록한다. 커넥션 대기 시간을 보고 HikariCP 의 최대 크기를
+ *     	   item.pool.adaptive.* 범위 안에서 조절한다. local 프로필에서 켠다.</li>
+ *     <li>dataSource : item.datasource.replica.urls 가 있을 때만 등록한다. 스프링 부트가 만드는 데이터소스 대신
+ *     	   readOnly 트랜잭션을 읽기 복제본으로 보내는 ReplicaRoutingDataSource 를 사용한다.</li>
+ *     <li>itemSecondLevelCache : item.cache.enabled=true 일 때만 등록한다. JPA 로 조회하는 Item 을 하이버네이트 2차 캐시
+ *     	   (JCache + Caffeine)에 저장하고, item.cache.query.enabled=true 이면 ItemQueryRepositoryV2 의 검색 결과도 저장한다.</li>
+ *     <li>virtualThreadPinningMonitor : item.virtual-threads.pinning.enabled=true 일 때만 등록한다. 가상 스레드 모드
+ *     	   (virtual 프로필)에서 캐리어 스레드를 붙잡는 JDBC, MyBatis, 하이버네이트 경로를 JFR 이벤트로 찾아서 기록한다.</li>
  * </ul>
  */
 @Slf4j
 //@Import(MemoryConfig.class)
+//@Import(ColumnarMemoryConfig.class)
+//@Import(MappedLogConfig.class)
 //@Import(JdbcTemplateV1Config.class)
 //@Import(JdbcTemplateV2Config.class)
 //@Import(JdbcTemplateV2Config.class)
@@ -46,6 +83,92 @@ public class SpringDbApplication {
 		return new TestDataInit(itemRepository);
 	}
 
+	@Bean
+	@ConditionalOnProperty(name = "item.warmup.enabled", havingValue = "true")
+	public ItemWarmup itemWarmup(ItemService itemService, PlatformTransactionManager transactionManager,
+								 @Value("${item.warmup.iterations:20}") int iterations,
+								 @Value("${item.warmup.write-paths:false}") boolean writePaths) {
+		return new ItemWarmup(itemService, transactionManager, iterations, writePaths);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "item.pool.adaptive.enabled", havingValue = "true")
+	public HikariPoolSizer hikariPoolSizer(DataSource dataSource, ObjectProvider<MeterRegistry> meterRegistry,
+										   @Value("${item.pool.adaptive.min-size}") int minSize,
+										   @Value("${item.pool.adaptive.max-size}") int maxSize,
+										   @Value("${item.pool.adaptive.target-wait-ms}") long targetWaitMs,
+										   @Value("${item.pool.adaptive.interval-ms}") long intervalMs,
+										   @Value("${item.pool.adaptive.grow-step}") int growStep,
+										   @Value("${item.pool.adaptive.shrink-after}") int shrinkAfter) throws SQLException {
+		return new HikariPoolSizer(dataSource.unwrap(HikariDataSource.class), meterRegistry,
+				minSize, maxSize, targetWaitMs, intervalMs, growStep, shrinkAfter);
+	}
+
+	/**
+	 * <h2>읽기/쓰기 분리 데이터소스</h2>
+	 * primary 는 스프링 부트와 같은 방법으로 spring.datasource.*, spring.datasource.hikari.* 설정을 사용하고,
+	 * 복제본마다 별도의 HikariCP 풀(pool 이름 뒤에 -replica-번호)을 만든다.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "item.datasource.replica.urls")
+	public ReplicaRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+											   ObjectProvider<MeterRegistry> meterRegistry,
+											   @Value("${item.datasource.replica.urls}") List<String> replicaUrls,
+											   @Value("${item.datasource.replica.pool-size}") int replicaPoolSize,
+											   @Value("${item.datasource.replica.balance}") String balance,
+											   @Value("${item.datasource.replica.lag-query:}") String lagQuery,
+											   @Value("${item.datasource.replica.max-lag-ms}") long maxLagMs,
+											   @Value("${item.datasource.replica.lag-check-interval-ms}") long lagCheckIntervalMs) {
+		HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+		List<HikariDataSource> replicas = new ArrayList<>();
+		for (int i = 0; i < replicaUrls.size(); i++) {
+			HikariDataSource replica = new HikariDataSource();
+			replica.setPoolName(primary.getPoolName() + "-replica-" + i);
+			replica.setJdbcUrl(replicaUrls.get(i).trim());
+			replica.setUsername(properties.determineUsername());
+			replica.setPassword(properties.determinePassword());
+			replica.setMaximumPoolSize(replicaPoolSize);
+			replica.setMinimumIdle(Math.min(primary.getMinimumIdle(), replicaPoolSize));
+			replica.setReadOnly(true);
+			meterRegistry.ifAvailable(replica::setMetricRegistry); //복제본 풀도 hikaricp.connections.* 메트릭을 남긴다.
+			replicas.add(replica);
+		}
+		return new ReplicaRoutingDataSource(primary, replicas,
+				ReplicaRoutingDataSource.Balance.valueOf(balance.trim().toUpperCase().replace('-', '_')),
+				lagQuery, maxLagMs, lagCheckIntervalMs);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "item.cache.enabled", havingValue = "true")
+	public ItemSecondLevelCache itemSecondLevelCache(@Value("${item.cache.entity.max-size}") long entityMaxSize,
+													 @Value("${item.cache.entity.ttl}") Duration entityTtl,
+													 @Value("${item.cache.query.enabled:false}") boolean queryCache,
+													 @Value("${item.cache.query.max-size}") long queryMaxSize,
+													 @Value("${item.cache.query.ttl}") Duration queryTtl,
+													 @Value("${item.cache.statistics:true}") boolean statistics) {
+		return new ItemSecondLevelCache(entityMaxSize, entityTtl, queryCache, queryMaxSize, queryTtl, statistics);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "item.virtual-threads.pinning.enabled", havingValue = "true")
+	public VirtualThreadPinningMonitor virtualThreadPinningMonitor(ObjectProvider<MeterRegistry> meterRegistry,
+																   @Value("${item.virtual-threads.pinning.threshold}") Duration threshold,
+																   @Value("${item.virtual-threads.pinning.stack-depth}") int stackDepth) {
+		return new VirtualThreadPinningMonitor(meterRegistry, threshold, stackDepth);
+	}
+
+	@Bean
+	public static ItemMetricsPostProcessor itemMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+		return new ItemMetricsPostProcessor(meterRegistry);
+	}
+
+	@Bean
+	public QueryShapeMetrics queryShapeMetrics(ObjectProvider<ItemRepository> itemRepositories) {
+		return new QueryShapeMetrics(itemRepositories);
+	}
+
 	/**
 	 * <h2>테스트 - 임베디드 모드 DB 직접 사용</h2>
 	 * H2 데이터베이스는 자바로 개발되어 있고, JVM안에서 메모리 모드로 동작하는 특별한 기능을 제공한다.
@@ -0,0 +1,102 @@
+package thespeace.springdb.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * <h2>하이버네이트 2차 캐시(Item) - JCache + Caffeine</h2>
+ * 상품 상세, 수정 화면은 같은 상품을 반복해서 조회한다. em.find(findById)는 영속성 컨텍스트(1차 캐시)에 없으면 매번 데이터베이스를
+ * 조회하는데, 영속성 컨텍스트는 트랜잭션(요청)마다 새로 만들어지므로 요청 사이에는 재사용되지 않는다.<br>
+ * 2차 캐시는 EntityManagerFactory 범위라서 요청이 달라도 공유되고, 여기에 있으면 SELECT 없이 엔티티를 만든다.
+ *
+ * <h2>영역(region)</h2>
+ * <ul>
+ *     <li>{@value #ITEM_REGION} : Item 엔티티. {@code @Cache(region = "item")} 로 지정한다. maximumSize 를 넘으면 Caffeine 이
+ *         자주 쓰지 않는 상품부터 내보내고(W-TinyLFU), 저장 후 ttl 이 지나면 만료된다.</li>
+ *     <li>{@value #SEARCH_REGION} : ItemQueryRepositoryV2 검색 결과(쿼리 캐시). queryCache 가 true 일 때만 사용한다. 결과로
+ *         id 목록만 저장하고 엔티티는 {@value #ITEM_REGION} 에서 가져온다. 같은 검색 조건이 자주 반복될 때만 효과가 있으므로
+ *         기본은 사용하지 않는다.</li>
+ *     <li>default-update-timestamps-region : 테이블마다 마지막으로 변경된 시각. 검색 결과를 저장한 뒤에 item 테이블이 바뀌면
+ *         그 결과를 버린다. 잘못된 결과를 막는 역할이라 크기 제한, 만료를 두지 않는다.</li>
+ * </ul>
+ *
+ * <h2>주의</h2>
+ * <ul>
+ *     <li>하이버네이트를 거치지 않는 변경(JdbcTemplate, MyBatis 리포지토리, 다른 애플리케이션)은 캐시에 반영되지 않는다.
+ *         같은 데이터베이스를 함께 쓴다면 ttl 만큼 이전 값이 보일 수 있다.</li>
+ *     <li>JPA 리포지토리의 수정(update)은 엔티티를 조회하지 않고 UPDATE 를 실행한다. JPQL UPDATE 는 어떤 행이 바뀌었는지
+ *         모르므로 {@value #ITEM_REGION} 영역 전체를 비우므로, 네이티브 UPDATE 로 실행하고 수정한 상품과 검색 결과만
+ *         지운다.(ItemDirectUpdate 참고)</li>
+ *     <li>CacheManager 는 URI 마다 하나씩 만들어져 JVM 안에서 공유된다. 테스트처럼 컨텍스트가 여러 개 떠도 영역이 겹치지
+ *         않도록 인스턴스마다 다른 URI 를 사용하고, 컨텍스트가 종료될 때 닫는다.</li>
+ *     <li>statistics 가 true 이면 하이버네이트 통계를 켠다. 스프링 부트가 hibernate.second.level.cache.requests
+ *         (region, result=hit|miss), hibernate.cache.query.requests 메트릭으로 내보낸다.</li>
+ * </ul>
+ */
+@Slf4j
+public class ItemSecondLevelCache implements HibernatePropertiesCustomizer, AutoCloseable {
+
+    public static final String ITEM_REGION = "item";
+    public static final String SEARCH_REGION = "item-search";
+
+    private final CacheManager cacheManager;
+    private final boolean queryCache;
+    private final boolean statistics;
+
+    public ItemSecondLevelCache(long entityMaxSize, Duration entityTtl,
+                                boolean queryCache, long queryMaxSize, Duration queryTtl, boolean statistics) {
+        this.queryCache = queryCache;
+        this.statistics = statistics;
+        this.cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("item-second-level-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+
+        cacheManager.createCache(ITEM_REGION, region(entityMaxSize, entityTtl));
+        cacheManager.createCache(SEARCH_REGION, region(queryMaxSize, queryTtl));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, region(queryMaxSize, queryTtl));
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, unbounded());
+        log.info("second-level cache item(max={}, ttl={}), query cache={}(max={}, ttl={})",
+                entityMaxSize, entityTtl, queryCache, queryMaxSize, queryTtl);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+        hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, queryCache);
+        hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+        hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail"); //영역 이름이 틀리면 제한 없는 캐시를 만들지 않고 실패한다.
+        hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, statistics);
+    }
+
+    @Override
+    public void close() {
+        cacheManager.close();
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> config = unbounded();
+        config.setMaximumSize(OptionalLong.of(maxSize));
+        config.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        return config;
+    }
+
+    private static CaffeineConfiguration<Object, Object> unbounded() {
+        CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+        config.setStoreByValue(false); //하이버네이트가 이미 분해된 상태(CacheEntry)로 저장하므로 다시 직렬화해서 복사하지 않는다.
+        config.setStatisticsEnabled(true); //JMX(javax.cache:type=CacheStatistics)로도 영역별 적중률을 볼 수 있다.
+        return config;
+    }
+}
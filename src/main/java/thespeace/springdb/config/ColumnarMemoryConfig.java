@@ -0,0 +1,23 @@
+package thespeace.springdb.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.memory.ColumnarItemRepository;
+import thespeace.springdb.service.ItemService;
+import thespeace.springdb.service.ItemServiceV1;
+
+@Configuration
+public class ColumnarMemoryConfig {
+
+    @Bean
+    public ItemService itemService() {
+        return new ItemServiceV1(itemRepository());
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        return new ColumnarItemRepository();
+    }
+
+}
@@ -5,6 +5,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
 import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.id.IdAllocator;
+import thespeace.springdb.repository.id.SequenceIdAllocator;
 import thespeace.springdb.repository.jdbctemplate.JdbcTemplateItemRepositoryV1;
 import thespeace.springdb.repository.memory.MemoryItemRepository;
 import thespeace.springdb.service.ItemService;
@@ -25,7 +27,12 @@ public class JdbcTemplateV1Config {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new JdbcTemplateItemRepositoryV1(dataSource);
+        return new JdbcTemplateItemRepositoryV1(dataSource, idAllocator());
+    }
+
+    @Bean
+    public IdAllocator idAllocator() {
+        return new SequenceIdAllocator(dataSource, SequenceIdAllocator.ITEM_SEQUENCE, SequenceIdAllocator.ALLOCATION_SIZE);
     }
 
 }
@@ -4,6 +4,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.id.IdAllocator;
+import thespeace.springdb.repository.id.SequenceIdAllocator;
 import thespeace.springdb.repository.jdbctemplate.JdbcTemplateItemRepositoryV2;
 import thespeace.springdb.service.ItemService;
 import thespeace.springdb.service.ItemServiceV1;
@@ -23,7 +25,12 @@ public class JdbcTemplateV2Config {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new JdbcTemplateItemRepositoryV2(dataSource);
+        return new JdbcTemplateItemRepositoryV2(dataSource, idAllocator());
+    }
+
+    @Bean
+    public IdAllocator idAllocator() {
+        return new SequenceIdAllocator(dataSource, SequenceIdAllocator.ITEM_SEQUENCE, SequenceIdAllocator.ALLOCATION_SIZE);
     }
 
 }
@@ -0,0 +1,39 @@
+package thespeace.springdb.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.file.MappedLogItemRepository;
+import thespeace.springdb.service.ItemService;
+import thespeace.springdb.service.ItemServiceV1;
+
+import java.nio.file.Path;
+
+/**
+ * SQL 데이터베이스 없이 메모리 매핑 로그 파일에 상품을 저장한다.<br>
+ * 빈이 종료될 때 close() 가 호출되어 스냅샷을 남긴다.
+ */
+@Configuration
+public class MappedLogConfig {
+
+    @Value("${item.log.dir}")
+    private Path directory;
+
+    @Value("${item.log.snapshot-threshold}")
+    private long snapshotThreshold;
+
+    @Value("${item.log.sync-on-write}")
+    private boolean syncOnWrite;
+
+    @Bean
+    public ItemService itemService() {
+        return new ItemServiceV1(itemRepository());
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        return new MappedLogItemRepository(directory, snapshotThreshold, syncOnWrite);
+    }
+
+}
@@ -1,5 +1,6 @@
 package thespeace.springdb.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.memory.MemoryItemRepository;
 import thespeace.springdb.service.ItemService;
@@ -10,14 +11,23 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class MemoryConfig {
 
+    @Value("${item.memory.parallel-threshold}")
+    private int parallelThreshold;
+
+    @Value("${item.memory.parallelism:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int parallelism;
+
+    @Value("${item.memory.max-parallel-scans}")
+    private int maxParallelScans;
+
     @Bean
     public ItemService itemService() {
         return new ItemServiceV1(itemRepository());
     }
 
-    @Bean
+    @Bean(destroyMethod = "close") //병렬 스캔용 ForkJoinPool 종료
     public ItemRepository itemRepository() {
-        return new MemoryItemRepository();
+        return new MemoryItemRepository(parallelThreshold, parallelism, maxParallelScans);
     }
 
 }
@@ -1,14 +1,19 @@
 package thespeace.springdb.config;
 
 import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.id.IdAllocator;
+import thespeace.springdb.repository.id.SequenceIdAllocator;
 import thespeace.springdb.repository.mybatis.ItemMapper;
 import thespeace.springdb.repository.mybatis.MyBatisItemRepository;
 import thespeace.springdb.service.ItemService;
 import thespeace.springdb.service.ItemServiceV1;
 
+import javax.sql.DataSource;
+
 @Configuration
 @RequiredArgsConstructor
 public class MyBatisConfig {
@@ -17,6 +22,8 @@ public class MyBatisConfig {
      * MyBatis 모듈이 데이터 소스나 트랜잭션 매니저 같은 걸 다 읽어서 해당 매퍼와 연결시켜준다.
      */
     private final ItemMapper itemMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final DataSource dataSource;
 
     @Bean
     public ItemService itemService() {
@@ -25,7 +32,12 @@ public class MyBatisConfig {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new MyBatisItemRepository(itemMapper);
+        return new MyBatisItemRepository(itemMapper, sqlSessionFactory, idAllocator());
+    }
+
+    @Bean
+    public IdAllocator idAllocator() {
+        return new SequenceIdAllocator(dataSource, SequenceIdAllocator.ITEM_SEQUENCE, SequenceIdAllocator.ALLOCATION_SIZE);
     }
 
 }
@@ -1,5 +1,6 @@
 package thespeace.springdb.config;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,6 +16,7 @@ public class SpringDataJpaConfig {
 
     //SpringDataJpaItemRepository 는 스프링 데이터 JPA가 프록시 기술로 만들어주고 스프링 빈으로도 등록해준다.
     private final SpringDataJpaItemRepository springDataJpaItemRepository;
+    private final EntityManager em;
 
     @Bean
     public ItemService itemService() {
@@ -23,7 +25,7 @@ public class SpringDataJpaConfig {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new JpaItemRepositoryV2(springDataJpaItemRepository);
+        return new JpaItemRepositoryV2(springDataJpaItemRepository, em);
     }
 
 }
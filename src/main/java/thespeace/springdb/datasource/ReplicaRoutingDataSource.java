@@ -0,0 +1,193 @@
+package thespeace.springdb.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h2>읽기/쓰기 분리 데이터소스</h2>
+ * {@code @Transactional(readOnly = true)} 트랜잭션은 읽기 복제본(replica)으로, 나머지(쓰기, 트랜잭션 없음)는 주 데이터베이스
+ * (primary)로 보낸다. 목록 화면처럼 대부분이 읽기인 요청이 쓰기와 primary 커넥션을 두고 경쟁하지 않게 한다.
+ *
+ * <h2>LazyConnectionDataSourceProxy 로 감싸는 이유</h2>
+ * 트랜잭션 매니저는 트랜잭션을 시작할 때(doBegin) 커넥션을 먼저 얻고, 그 다음에 readOnly 여부를
+ * TransactionSynchronizationManager 에 기록한다. 그대로 라우팅하면 항상 readOnly 를 모르는 상태에서 고르게 된다.<br>
+ * LazyConnectionDataSourceProxy 는 실제 SQL 을 실행할 때까지 커넥션 획득을 미루므로, 그 시점에는 readOnly 를 보고 고를 수
+ * 있다. 트랜잭션 안에서 SQL 을 실행하지 않으면 커넥션을 아예 얻지 않는 장점도 있다.
+ *
+ * <h2>복제본 선택</h2>
+ * <ul>
+ *     <li>{@link Balance#ROUND_ROBIN} : 차례대로 돌아가며 사용한다.</li>
+ *     <li>{@link Balance#LEAST_LOADED} : 사용 중인 커넥션(HikariPoolMXBean)이 가장 적은 복제본을 사용한다.</li>
+ *     <li>복제본에서 커넥션을 얻지 못하면 다음 복제본을, 모두 실패하면 primary 를 사용한다.</li>
+ *     <li>lagQuery 를 지정하면 lagCheckIntervalMs 마다 복제본에서 실행해서 지연(ms)이 maxLagMs 를 넘는 복제본은 따라잡을 때까지
+ *         제외한다. 데이터베이스마다 지연을 구하는 방법이 달라서(예: 복제 상태 뷰, heartbeat 테이블) SQL 로 받는다.</li>
+ * </ul>
+ * 복제 지연이 있으므로, 방금 쓴 데이터를 바로 다시 읽어야 하는 곳은 readOnly 트랜잭션을 사용하지 않는다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    public enum Balance {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Balance balance,
+                                    String lagQuery, long maxLagMs, long lagCheckIntervalMs) {
+        super(new Router(primary, replicas, balance, lagQuery, maxLagMs, lagCheckIntervalMs));
+    }
+
+    @Override
+    public void close() {
+        ((Router) obtainTargetDataSource()).close();
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(HikariDataSource pool) throws SQLException;
+    }
+
+    private static class Router extends AbstractDataSource implements AutoCloseable {
+
+        private final HikariDataSource primary;
+        private final List<HikariDataSource> replicas;
+        private volatile boolean[] lagging; //검사할 때마다 새 배열로 바꾼다.
+        private final Balance balance;
+        private final AtomicInteger next = new AtomicInteger();
+        private final ScheduledExecutorService lagChecker;
+
+        Router(HikariDataSource primary, List<HikariDataSource> replicas, Balance balance,
+               String lagQuery, long maxLagMs, long lagCheckIntervalMs) {
+            this.primary = primary;
+            this.replicas = List.copyOf(replicas);
+            this.lagging = new boolean[replicas.size()];
+            this.balance = balance;
+
+            if (lagQuery == null || lagQuery.isBlank() || replicas.isEmpty()) {
+                this.lagChecker = null;
+                return;
+            }
+            this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-lag-checker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            lagChecker.scheduleWithFixedDelay(() -> checkLag(lagQuery, maxLagMs),
+                    0, lagCheckIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route(HikariDataSource::getConnection);
+        }
+
+        /**
+         * 같은 규칙으로 고른 풀에 그대로 넘긴다. 계정을 바꿔서 받을 수 있는지는 풀(HikariCP)이 정한다.
+         */
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return route(pool -> pool.getConnection(username, password));
+        }
+
+        private Connection route(ConnectionOpener opener) throws SQLException {
+            if (replicas.isEmpty()
+                    || !TransactionSynchronizationManager.isActualTransactionActive()
+                    || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return opener.open(primary);
+            }
+
+            boolean[] lagging = this.lagging;
+            int first = first(lagging);
+            for (int i = 0; i < replicas.size(); i++) {
+                int index = (first + i) % replicas.size();
+                if (lagging[index]) {
+                    continue;
+                }
+                try {
+                    return opener.open(replicas.get(index));
+                } catch (SQLException e) {
+                    log.warn("replica {} unavailable, trying next", replicas.get(index).getPoolName(), e);
+                }
+            }
+            return opener.open(primary); //사용할 수 있는 복제본이 없으면 primary 에서 읽는다.
+        }
+
+        private int first(boolean[] lagging) {
+            if (balance == Balance.ROUND_ROBIN) {
+                return Math.floorMod(next.getAndIncrement(), replicas.size());
+            }
+            int best = 0;
+            int bestActive = Integer.MAX_VALUE;
+            for (int i = 0; i < replicas.size(); i++) {
+                if (lagging[i]) {
+                    continue;
+                }
+                HikariPoolMXBean pool = replicas.get(i).getHikariPoolMXBean();
+                int active = pool == null ? 0 : pool.getActiveConnections();
+                if (active < bestActive) {
+                    best = i;
+                    bestActive = active;
+                }
+            }
+            return best;
+        }
+
+        private void checkLag(String lagQuery, long maxLagMs) {
+            boolean[] checked = new boolean[replicas.size()];
+            for (int i = 0; i < replicas.size(); i++) {
+                boolean behind;
+                try (Connection con = replicas.get(i).getConnection();
+                     Statement stmt = con.createStatement();
+                     ResultSet rs = stmt.executeQuery(lagQuery)) {
+                    behind = !rs.next() || rs.getLong(1) > maxLagMs;
+                } catch (SQLException e) {
+                    behind = true;
+                }
+                if (behind != lagging[i]) {
+                    log.warn("replica {} {}", replicas.get(i).getPoolName(), behind ? "excluded (lagging)" : "caught up");
+                }
+                checked[i] = behind;
+            }
+            lagging = checked;
+        }
+
+        /**
+         * HikariCP 메트릭, HikariPoolSizer 가 primary 풀을 찾을 수 있게 한다.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(this)) {
+                return (T) this;
+            }
+            return primary.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this) || primary.isWrapperFor(iface);
+        }
+
+        @Override
+        public void close() {
+            if (lagChecker != null) {
+                lagChecker.shutdownNow();
+            }
+            replicas.forEach(HikariDataSource::close);
+            primary.close();
+        }
+    }
+}
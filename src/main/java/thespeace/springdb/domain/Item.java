@@ -2,6 +2,11 @@ package thespeace.springdb.domain;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import thespeace.springdb.cache.ItemSecondLevelCache;
+import thespeace.springdb.repository.gram.ItemNameGramListener;
+import thespeace.springdb.rowmapper.GeneratedRowMapper;
 
 /**
  * <h2>상품 자체를 나타내는 객체</h2>
@@ -13,6 +18,10 @@ import lombok.Data;
  *     <li>@Id : 테이블의 PK와 해당 필드를 매핑한다.</li>
  *     <li>@GeneratedValue(strategy = GenerationType.IDENTITY) : PK 생성 값을 데이터베이스에서 생성하는
  *                                                               IDENTITY 방식을 사용한다. 예) MySQL auto increment</li>
+ *     <li>@GeneratedValue(strategy = GenerationType.SEQUENCE) : IDENTITY 는 INSERT 를 실행해야 id 를 알 수 있어서
+ *         Hibernate 가 INSERT 를 JDBC 배치로 묶지 못한다. 그래서 item_seq 시퀀스에서 {@code allocationSize} 만큼
+ *         블록으로 받아서 persist 시점에 id 를 채운다. JDBC, MyBatis 리포지토리의 SequenceIdAllocator 와 같은 시퀀스를
+ *         pooled-lo 방식으로 사용한다.({@code hibernate.id.optimizer.pooled.preferred=pooled-lo})</li>
  *     <li>@Column : 객체의 필드를 테이블의 컬럼과 매핑한다.
  *         <ul>
  *             <li>name = "item_name" : 객체는 itemName 이지만 테이블의 컬럼은 item_name 이므로 이렇게 매핑.</li>
@@ -29,13 +38,35 @@ import lombok.Data;
  *     </li>
  *     <li>JPA는 public 또는 protected 의 기본 생성자가 필수이다.(+프록시 기술 사용) {@code public Item() {} }</li>
  * </ul>
+ *
+ * <h2>RowMapper 생성</h2>
+ * {@code @GeneratedRowMapper} : 컴파일할 때 ItemRowMapper 를 생성한다. JdbcTemplate 리포지토리는 이 RowMapper 로
+ * 컬럼을 인덱스로 읽고 setter 를 직접 호출한다. 필드 순서를 바꾸면 {@code ItemRowMapper.COLUMNS} 도 함께 바뀐다.
+ *
+ * <h2>상품명 n-gram</h2>
+ * {@code @EntityListeners(ItemNameGramListener.class)} : JPA 로 저장, 수정, 삭제할 때 item_name_gram 테이블도 함께 갱신한다.
+ * (ItemNameGrams 참고)
+ *
+ * <h2>2차 캐시</h2>
+ * <ul>
+ *     <li>@Cacheable : 2차 캐시에 저장할 엔티티. 기본 shared-cache-mode(ENABLE_SELECTIVE)에서는 이 애노테이션이 있는 엔티티만
+ *         저장한다. 2차 캐시를 켜지 않으면(ItemSecondLevelCache 빈이 없으면) 무시된다.</li>
+ *     <li>@Cache(READ_WRITE) : 수정하는 트랜잭션이 커밋될 때까지 다른 트랜잭션은 캐시 대신 데이터베이스를 읽는다.
+ *         커밋되지 않은 값이 캐시에서 보이지 않는다.</li>
+ * </ul>
  */
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ItemSecondLevelCache.ITEM_REGION)
+@EntityListeners(ItemNameGramListener.class)
+@GeneratedRowMapper
 //@Table(name = "Item") //객체명이랑 같으면 생략 가능.
 public class Item {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+    @SequenceGenerator(name = "item_seq", sequenceName = "item_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "item_name", length = 10)
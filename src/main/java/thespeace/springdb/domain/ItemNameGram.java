@@ -0,0 +1,39 @@
+package thespeace.springdb.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * <h2>상품명 n-gram</h2>
+ * item_name_gram 테이블. JPQL, Querydsl 에서 상품명 검색 후보를 찾는 서브쿼리에 사용한다.(ItemNameGrams 참고)<br>
+ * 저장은 ItemNameGramListener, JDBC 리포지토리가 SQL 로 직접 하므로 이 엔티티로 persist 하지 않는다.
+ * <ul>
+ *     <li>@IdClass : (gram, item_id) 복합 기본 키. 같은 이름의 필드를 가진 {@link Key} 를 식별자 클래스로 사용한다.</li>
+ * </ul>
+ */
+@Data
+@Entity
+@Table(name = "item_name_gram", indexes = @Index(name = "item_name_gram_item_id", columnList = "item_id"))
+@IdClass(ItemNameGram.Key.class)
+public class ItemNameGram {
+
+    @Id
+    @Column(length = 3)
+    private String gram;
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String gram;
+        private Long itemId;
+    }
+}
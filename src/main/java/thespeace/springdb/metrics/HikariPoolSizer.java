@@ -0,0 +1,183 @@
+package thespeace.springdb.metrics;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h2>커넥션 풀 크기 자동 조절</h2>
+ * 주기적으로 HikariCP 의 상태(HikariPoolMXBean)와 커넥션 획득 대기 시간(hikaricp.connections.acquire Timer)을 보고
+ * maximumPoolSize 를 [minSize, maxSize] 범위 안에서 조절한다.
+ * <ul>
+ *     <li>늘리기 : 커넥션을 기다리는 스레드가 있거나, 지난 주기의 평균 대기 시간이 targetWaitMs 를 넘으면 growStep 만큼 늘린다.</li>
+ *     <li>줄이기 : 대기하는 스레드가 없고 평균 대기 시간이 targetWaitMs 의 1/4 미만이며, 사용 중인 커넥션이 최대 크기의 절반
+ *         미만인 주기가 shrinkAfter 번 연속되면 하나 줄인다. 한 번의 혼잡으로 늘렸다가 바로 줄이지 않기 위해서다.</li>
+ *     <li>HikariCP 는 maximumPoolSize 를 실행 중에 바꿀 수 있다(HikariConfigMXBean). 줄일 때 이미 열린 커넥션을 바로 닫지는
+ *         않고, minimumIdle 을 넘는 유휴 커넥션이 idleTimeout 후에 정리된다.</li>
+ *     <li>늘릴 때는 기다리는 스레드를 위해 커넥션 생성을 다시 요청한다({@link #fillForWaiters()}).</li>
+ *     <li>조절할 때마다 item.pool.resize (Counter, direction=grow|shrink) 를 기록한다. 현재 크기는 hikaricp.connections.max 로
+ *         확인한다.</li>
+ * </ul>
+ * 풀은 첫 커넥션을 요청할 때 시작되므로, 그 전의 주기는 건너뛴다.
+ */
+@Slf4j
+public class HikariPoolSizer implements SmartLifecycle {
+
+    private final HikariDataSource dataSource;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private final int minSize;
+    private final int maxSize;
+    private final long targetWaitNanos;
+    private final long intervalMs;
+    private final int growStep;
+    private final int shrinkAfter;
+
+    private ScheduledExecutorService scheduler;
+
+    private long lastAcquireCount;
+    private double lastAcquireNanos;
+    private int calmIntervals;
+
+    public HikariPoolSizer(HikariDataSource dataSource, ObjectProvider<MeterRegistry> meterRegistryProvider,
+                           int minSize, int maxSize, long targetWaitMs, long intervalMs, int growStep, int shrinkAfter) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("1 <= minSize <= maxSize 이어야 합니다. minSize=" + minSize + ", maxSize=" + maxSize);
+        }
+        this.dataSource = dataSource;
+        this.meterRegistryProvider = meterRegistryProvider;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMs);
+        this.intervalMs = intervalMs;
+        this.growStep = growStep;
+        this.shrinkAfter = shrinkAfter;
+    }
+
+    @Override
+    public synchronized void start() {
+        HikariConfigMXBean config = dataSource.getHikariConfigMXBean();
+        config.setMaximumPoolSize(Math.max(minSize, Math.min(maxSize, config.getMaximumPoolSize())));
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hikari-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::resizeSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("adaptive pool sizing started pool={}, size={}..{}, targetWait={}ms",
+                dataSource.getPoolName(), minSize, maxSize, TimeUnit.NANOSECONDS.toMillis(targetWaitNanos));
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    private void resizeSafely() {
+        try {
+            resize();
+        } catch (RuntimeException e) { //예외로 스케줄이 멈추지 않도록 한다.
+            log.warn("adaptive pool sizing failed", e);
+        }
+    }
+
+    private void resize() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+        HikariConfigMXBean config = dataSource.getHikariConfigMXBean();
+        int current = config.getMaximumPoolSize();
+        int pending = pool.getThreadsAwaitingConnection();
+        int active = pool.getActiveConnections();
+        double meanWaitNanos = meanAcquireNanos();
+
+        if ((pending > 0 || meanWaitNanos > targetWaitNanos) && current < maxSize) {
+            calmIntervals = 0;
+            apply(config, current, Math.min(maxSize, current + growStep), "grow", pending, active, meanWaitNanos);
+            if (pending > 0) {
+                fillForWaiters();
+            }
+            return;
+        }
+
+        boolean calm = pending == 0 && meanWaitNanos < targetWaitNanos / 4.0 && active < current / 2.0;
+        calmIntervals = calm ? calmIntervals + 1 : 0;
+        if (calmIntervals >= shrinkAfter && current > minSize) {
+            calmIntervals = 0;
+            apply(config, current, current - 1, "shrink", pending, active, meanWaitNanos);
+        }
+    }
+
+    private void apply(HikariConfigMXBean config, int current, int size, String direction,
+                       int pending, int active, double meanWaitNanos) {
+        if (config.getMinimumIdle() > size) {
+            config.setMinimumIdle(size);
+        }
+        config.setMaximumPoolSize(size);
+        log.info("pool {} {} -> {} (pending={}, active={}, meanWait={}ms)", direction, current, size,
+                pending, active, String.format("%.2f", meanWaitNanos / 1_000_000));
+
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry != null) {
+            Counter.builder("item.pool.resize")
+                    .tag("pool", dataSource.getPoolName())
+                    .tag("direction", direction)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    /**
+     * HikariCP 는 커넥션을 빌리기 시작할 때만 새 커넥션 생성을 요청하고, 생성 작업은 그때의 maximumPoolSize 까지만 만든다.
+     * 이미 기다리고 있는 스레드의 요청은 늘리기 전의 크기에서 끝났으므로, 그대로 두면 housekeeper(30초)가 돌거나 새 요청이
+     * 올 때까지 기다린다. 그래서 늘린 뒤에 한 번 빌렸다가 바로 반납해서 생성을 다시 요청한다.
+     * 생성 작업은 기다리는 스레드가 남아 있는 동안 계속 만들므로 기다리던 스레드도 새 커넥션을 받는다.
+     */
+    private void fillForWaiters() {
+        try (Connection ignored = dataSource.getConnection()) {
+            log.debug("pool {} filled for waiting threads", dataSource.getPoolName());
+        } catch (SQLException e) {
+            log.warn("pool {} could not open a connection after growing", dataSource.getPoolName(), e);
+        }
+    }
+
+    /**
+     * 지난 주기 동안의 평균 커넥션 획득 시간. Timer 는 누적값이므로 이전 값과의 차이로 계산한다.
+     */
+    private double meanAcquireNanos() {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        Timer acquire = registry == null ? null
+                : registry.find("hikaricp.connections.acquire").tag("pool", dataSource.getPoolName()).timer();
+        if (acquire == null) {
+            return 0;
+        }
+        long count = acquire.count();
+        double totalNanos = acquire.totalTime(TimeUnit.NANOSECONDS);
+        long acquired = count - lastAcquireCount;
+        double mean = acquired > 0 ? (totalNanos - lastAcquireNanos) / acquired : 0;
+        lastAcquireCount = count;
+        lastAcquireNanos = totalNanos;
+        return mean;
+    }
+}
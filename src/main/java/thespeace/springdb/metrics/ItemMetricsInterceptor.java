@@ -0,0 +1,134 @@
+package thespeace.springdb.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.ItemSearchCond;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h2>ItemRepository, ItemService 메서드 측정</h2>
+ * 호출마다 다음 메트릭을 기록한다. 이름의 {@code <layer>} 는 repository 또는 service 이다.
+ * <ul>
+ *     <li>item.&lt;layer&gt; (Timer) : 호출 수와 지연 시간. 퍼센타일 히스토그램을 함께 기록하고, 퍼센타일은 모니터링 쪽에서
+ *         히스토그램으로 계산한다. streamAll 은 Stream 을 만들 때까지만 측정하고, 소비하는 시간은 포함하지 않는다.</li>
+ *     <li>item.&lt;layer&gt;.errors (Counter) : 예외가 발생한 호출 수. exception 태그에 예외 클래스 이름을 남긴다.</li>
+ *     <li>item.&lt;layer&gt;.rows (DistributionSummary) : List 를 반환하는 메서드(findAll, findList, findItems, findItemList)의 결과 건수.</li>
+ * </ul>
+ * 모든 메트릭에 backend(구현 클래스 이름), method, shape({@link ItemSearchCond#shape()}, 검색이 아니면 n/a) 태그를 붙인다.<br>
+ * MeterRegistry 는 처음 호출될 때 찾는다. 빈 후처리기가 MeterRegistry 를 너무 일찍 생성하지 않게 하기 위해서다.<br>
+ * 미터는 (이름, backend, method, shape) 마다 한 번만 등록하고 metersByKey 에 보관한다. 호출마다 빌더를 만들고 레지스트리에서
+ * 찾지 않는다.
+ */
+public class ItemMetricsInterceptor implements MethodInterceptor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private volatile MeterRegistry meterRegistry;
+    private final Map<MeterKey, Meters> metersByKey = new ConcurrentHashMap<>();
+
+    public ItemMetricsInterceptor(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        MeterRegistry registry = meterRegistry();
+        if (registry == null) {
+            return invocation.proceed();
+        }
+
+        Object target = invocation.getThis();
+        MeterKey key = new MeterKey(target instanceof ItemRepository ? "item.repository" : "item.service",
+                AopUtils.getTargetClass(target), invocation.getMethod().getName(), shape(invocation.getArguments()));
+        Meters meters = metersByKey.computeIfAbsent(key, k -> new Meters(k, registry));
+
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            Object result = invocation.proceed();
+            if (result instanceof Collection<?> rows) {
+                meters.rows().record(rows.size());
+            }
+            return result;
+        } catch (Throwable e) {
+            meters.errors(e.getClass()).increment();
+            throw e;
+        } finally {
+            sample.stop(meters.timer);
+        }
+    }
+
+    private MeterRegistry meterRegistry() {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            registry = meterRegistryProvider.getIfAvailable();
+            meterRegistry = registry;
+        }
+        return registry;
+    }
+
+    private static String shape(Object[] arguments) {
+        for (Object argument : arguments) {
+            if (argument instanceof ItemSearchCond cond) {
+                return cond.shape();
+            }
+        }
+        return "n/a";
+    }
+
+    private record MeterKey(String name, Class<?> backend, String method, String shape) {
+
+        Tags tags() {
+            return Tags.of("backend", backend.getSimpleName(), "method", method, "shape", shape);
+        }
+    }
+
+    /**
+     * 한 (이름, backend, method, shape) 의 미터. rows, errors 는 해당하는 결과가 처음 나올 때 등록한다.
+     */
+    private static final class Meters {
+
+        private final MeterKey key;
+        private final MeterRegistry registry;
+        private final Timer timer;
+        private volatile DistributionSummary rows;
+        private final Map<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+        Meters(MeterKey key, MeterRegistry registry) {
+            this.key = key;
+            this.registry = registry;
+            this.timer = Timer.builder(key.name())
+                    .tags(key.tags())
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        DistributionSummary rows() {
+            DistributionSummary rows = this.rows;
+            if (rows == null) {
+                rows = DistributionSummary.builder(key.name() + ".rows")
+                        .tags(key.tags())
+                        .publishPercentileHistogram()
+                        .register(registry); //동시에 등록해도 레지스트리가 같은 미터를 돌려준다.
+                this.rows = rows;
+            }
+            return rows;
+        }
+
+        Counter errors(Class<?> exception) {
+            return errors.computeIfAbsent(exception, e -> Counter.builder(key.name() + ".errors")
+                    .tags(key.tags())
+                    .tag("exception", e.getSimpleName())
+                    .register(registry));
+        }
+    }
+}
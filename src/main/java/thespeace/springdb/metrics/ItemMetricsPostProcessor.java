@@ -0,0 +1,45 @@
+package thespeace.springdb.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.util.ReflectionUtils;
+import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.service.ItemService;
+
+import java.lang.reflect.Method;
+
+/**
+ * <h2>ItemRepository, ItemService 빈에 메트릭을 붙이는 빈 후처리기</h2>
+ * 어떤 설정(MemoryConfig, JdbcTemplateV1Config ... V2Config)을 {@code @Import} 하더라도, 등록된 ItemRepository 와
+ * ItemService 빈의 인터페이스 메서드에 {@link ItemMetricsInterceptor} 를 적용한다. 각 리포지토리는 수정하지 않는다.
+ * <ul>
+ *     <li>이미 프록시인 빈(예: {@code @Transactional} 이 붙은 JpaItemRepository)은 기존 프록시에 어드바이저만 추가한다.</li>
+ *     <li>프록시가 아닌 빈은 클래스 기반(CGLIB) 프록시로 감싸서, 테스트의 {@code instanceof MemoryItemRepository} 같은
+ *         검사가 그대로 동작하게 한다.</li>
+ * </ul>
+ */
+public class ItemMetricsPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    public ItemMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.advisor = new DefaultPointcutAdvisor(new ItemMethodPointcut(), new ItemMetricsInterceptor(meterRegistryProvider));
+        this.beforeExistingAdvisors = true;
+        setProxyTargetClass(true);
+    }
+
+    private static class ItemMethodPointcut extends StaticMethodMatcherPointcut {
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return declaredIn(ItemRepository.class, method, targetClass)
+                    || declaredIn(ItemService.class, method, targetClass);
+        }
+
+        private static boolean declaredIn(Class<?> type, Method method, Class<?> targetClass) {
+            return type.isAssignableFrom(targetClass)
+                    && ReflectionUtils.findMethod(type, method.getName(), method.getParameterTypes()) != null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package thespeace.springdb.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.shape.QueryShapeAware;
+
+/**
+ * <h2>모양별 검색 쿼리 사용 횟수 메트릭</h2>
+ * 등록된 ItemRepository 가 {@link QueryShapeAware} 이면 그 QueryShapeRegistry 를 MeterRegistry 에 연결한다.
+ * 스프링 부트는 MeterBinder 빈을 MeterRegistry 에 자동으로 연결한다.
+ * <ul>
+ *     <li>item.query.shape (FunctionCounter) : repository, shape(예: name+after+page) 태그</li>
+ *     <li>/actuator/metrics/item.query.shape?tag=shape:both 처럼 조회한다.</li>
+ * </ul>
+ */
+public class QueryShapeMetrics implements MeterBinder {
+
+    private final ObjectProvider<ItemRepository> itemRepositories;
+
+    public QueryShapeMetrics(ObjectProvider<ItemRepository> itemRepositories) {
+        this.itemRepositories = itemRepositories;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        itemRepositories.forEach(repository -> {
+            if (repository instanceof QueryShapeAware aware) {
+                aware.queryShapes().bindTo(registry);
+            }
+        });
+    }
+}
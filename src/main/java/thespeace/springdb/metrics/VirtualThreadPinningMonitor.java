@@ -0,0 +1,137 @@
+package thespeace.springdb.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * <h2>가상 스레드 고정(pinning) 감지</h2>
+ * 가상 스레드가 synchronized 블록이나 네이티브 메서드 안에서 I/O, 락을 기다리면 캐리어(플랫폼) 스레드에서 내려오지 못하고
+ * 캐리어를 붙잡는다. 캐리어 수는 CPU 코어 수 정도라서, 이런 경로가 많으면 가상 스레드를 써도 동시성이 오히려 줄어든다.<br>
+ * JFR 의 jdk.VirtualThreadPinned 이벤트를 애플리케이션 안에서 스트림(RecordingStream)으로 받아서 기록한다.
+ * <ul>
+ *     <li>threshold 보다 오래 고정된 경우만 이벤트가 생긴다.</li>
+ *     <li>item.virtual-thread.pinned (Timer, path=jdbc|mybatis|hibernate|other) : 고정된 횟수와 시간. path 는 스택에
+ *         하이버네이트, MyBatis, JDBC(H2, HikariCP, spring-jdbc) 프레임이 있는지로 정한다.</li>
+ *     <li>처음 보는 스택이면 위쪽 stackDepth 개 프레임을 경고 로그로 남긴다. 같은 스택은 다시 남기지 않는다.</li>
+ * </ul>
+ * JFR 은 JDK 에 포함되어 있어서 별도 의존성이 없고, 이 이벤트 하나만 켜므로 부하가 작다.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_LOGGED_STACKS = 1000;
+
+    private static final List<String> HIBERNATE = List.of("org.hibernate.");
+    private static final List<String> MYBATIS = List.of("org.apache.ibatis.", "org.mybatis.");
+    private static final List<String> JDBC = List.of("org.h2.", "com.zaxxer.hikari.", "org.springframework.jdbc.", "java.sql.");
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private final Duration threshold;
+    private final int stackDepth;
+    private final Set<String> loggedStacks = ConcurrentHashMap.newKeySet();
+
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(ObjectProvider<MeterRegistry> meterRegistryProvider, Duration threshold, int stackDepth) {
+        this.meterRegistryProvider = meterRegistryProvider;
+        this.threshold = threshold;
+        this.stackDepth = stackDepth;
+    }
+
+    @Override
+    public synchronized void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::recordSafely);
+        stream.startAsync();
+        log.info("virtual thread pinning monitor started threshold={}ms", threshold.toMillis());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return stream != null;
+    }
+
+    private void recordSafely(RecordedEvent event) {
+        try {
+            record(event);
+        } catch (RuntimeException e) { //예외로 스트림이 멈추지 않도록 한다.
+            log.warn("failed to record pinned event", e);
+        }
+    }
+
+    private void record(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        String path = path(frames);
+
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry != null) {
+            Timer.builder("item.virtual-thread.pinned")
+                    .tag("path", path)
+                    .register(registry)
+                    .record(event.getDuration());
+        }
+
+        String stack = frames.stream()
+                .limit(stackDepth)
+                .map(VirtualThreadPinningMonitor::frame)
+                .collect(Collectors.joining("\n\tat "));
+        if (loggedStacks.size() < MAX_LOGGED_STACKS && loggedStacks.add(stack)) {
+            log.warn("virtual thread pinned path={}, duration={}ms, thread={}\n\tat {}", path,
+                    event.getDuration().toMillis(), event.getThread() == null ? "?" : event.getThread().getJavaName(), stack);
+        }
+    }
+
+    /**
+     * 위쪽(가장 안쪽 호출)의 JDBC 드라이버 프레임보다 그 드라이버를 부른 계층을 우선한다.
+     */
+    private static String path(List<RecordedFrame> frames) {
+        if (anyFrom(frames, HIBERNATE)) {
+            return "hibernate";
+        }
+        if (anyFrom(frames, MYBATIS)) {
+            return "mybatis";
+        }
+        if (anyFrom(frames, JDBC)) {
+            return "jdbc";
+        }
+        return "other";
+    }
+
+    private static boolean anyFrom(List<RecordedFrame> frames, List<String> packages) {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            for (String prefix : packages) {
+                if (type.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,18 @@
+package thespeace.springdb.repository;
+
+import thespeace.springdb.domain.Item;
+
+/**
+ * <h2>상품 목록 화면에서 사용하는 읽기 전용 객체</h2>
+ * <ul>
+ *     <li>목록은 보여주기만 하므로 엔티티 대신 필요한 컬럼만 담는다. JPA 구현체는 Querydsl
+ *         {@code Projections.constructor} 로 바로 만들어서, 영속성 컨텍스트에 엔티티와 변경 감지용 스냅샷이 생기지 않는다.</li>
+ *     <li>record 라서 값을 바꿀 수 없다. 타임리프(SpEL)는 {@code item.id} 를 {@code id()} 로 읽는다.</li>
+ * </ul>
+ */
+public record ItemListDto(Long id, String itemName, Integer price, Integer quantity) {
+
+    public static ItemListDto from(Item item) {
+        return new ItemListDto(item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+    }
+}
@@ -1,9 +1,12 @@
 package thespeace.springdb.repository;
 
+import org.springframework.dao.EmptyResultDataAccessException;
 import thespeace.springdb.domain.Item;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * <p>메모리 구현체에서 향후 다양한 데이터 접근 기술 구현체로 손쉽게 변경하기 위해
@@ -13,10 +16,37 @@ public interface ItemRepository {
 
     Item save(Item item);
 
+    /**
+     * 여러 상품을 한 번에 저장하고, 생성된 id 를 각 상품에 채워서 같은 순서로 반환한다.
+     * 구현체마다 JDBC 배치처럼 왕복 횟수를 줄이는 방법을 사용한다.
+     */
+    List<Item> saveAll(Collection<Item> items);
+
+    /**
+     * 상품명, 가격, 수량을 변경한다. 없는 id 면 아무것도 바꾸지 않고 {@link EmptyResultDataAccessException} 을 던진다.
+     */
     void update(Long itemId, ItemUpdateDto updateParam);
 
     Optional<Item> findById(Long id);
 
     List<Item> findAll(ItemSearchCond cond);
 
+    /**
+     * 목록 화면용 검색. findAll 과 같은 조건, 같은 순서이고 엔티티 대신 {@link ItemListDto} 를 반환한다.
+     * 기본 구현은 findAll 결과를 변환하고, JPA 구현체는 필요한 컬럼만 조회하도록 재정의한다.
+     */
+    default List<ItemListDto> findList(ItemSearchCond cond) {
+        return findAll(cond).stream().map(ItemListDto::from).toList();
+    }
+
+    /**
+     * findAll 과 같은 조건으로 검색하지만 결과를 리스트로 모으지 않고 한 건씩 흘려보낸다.
+     * <ul>
+     *     <li>반환된 Stream 은 커서(ResultSet)와 커넥션을 붙잡고 있으므로 반드시 try-with-resources 로 닫아야 한다.</li>
+     *     <li>MyBatis, JPA 구현체는 커서가 트랜잭션에 묶여 있으므로 트랜잭션 안에서 호출하고 소비해야 한다.
+     *         서비스의 {@code forEachItem} 이 이 경계를 잡아준다.</li>
+     * </ul>
+     */
+    Stream<Item> streamAll(ItemSearchCond cond);
+
 }
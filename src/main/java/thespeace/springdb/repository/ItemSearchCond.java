@@ -1,6 +1,7 @@
 package thespeace.springdb.repository;
 
 import lombok.Data;
+import org.springframework.util.StringUtils;
 
 /**
  * <h2>검색 조건</h2>
@@ -8,12 +9,24 @@ import lombok.Data;
  *     <li>검색 조건으로 사용. 상품명, 최대 가격이 있고 상품명의 일부만 포함되어도 검색이 가능해야 한다.(like 검색)</li>
  *     <li>cond condition 을 줄여서 사용했다. 검색 조건은 뒤에 Cond 를 붙이도록 규칙을 정함.</li>
  * </ul>
+ *
+ * <h2>키셋(seek) 페이징</h2>
+ * <ul>
+ *     <li>afterId : 이 id 보다 큰 상품부터 id 오름차순으로 size 개를 가져온다(다음 페이지).</li>
+ *     <li>beforeId : 이 id 보다 작은 상품 중 가장 가까운 size 개를 가져온다(이전 페이지). 결과는 역시 id 오름차순이다.</li>
+ *     <li>OFFSET 으로 앞의 행을 읽고 버리지 않고 id 인덱스(PK)에서 바로 시작 위치를 찾으므로, 뒤쪽 페이지도 첫 페이지와
+ *         비용이 같다.</li>
+ *     <li>size 가 null 이면 페이징하지 않고 조건에 맞는 상품을 모두 가져온다.</li>
+ * </ul>
  */
 @Data
 public class ItemSearchCond {
 
     private String itemName;
     private Integer maxPrice;
+    private Long afterId;
+    private Long beforeId;
+    private Integer size;
 
     public ItemSearchCond() {
     }
@@ -22,4 +35,31 @@ public class ItemSearchCond {
         this.itemName = itemName;
         this.maxPrice = maxPrice;
     }
+
+    public ItemSearchCond(String itemName, Integer maxPrice, Long afterId, Long beforeId, Integer size) {
+        this.itemName = itemName;
+        this.maxPrice = maxPrice;
+        this.afterId = afterId;
+        this.beforeId = beforeId;
+        this.size = size;
+    }
+
+    /**
+     * 이전 페이지 요청인지. id 내림차순으로 size 개를 읽은 뒤 오름차순으로 뒤집어야 한다.
+     */
+    public boolean backward() {
+        return beforeId != null;
+    }
+
+    /**
+     * 어떤 조건이 들어있는지(name, price, both, none). 메트릭 태그처럼 값이 아닌 검색 모양으로 묶을 때 사용한다.
+     */
+    public String shape() {
+        boolean name = StringUtils.hasText(itemName);
+        boolean price = maxPrice != null;
+        if (name && price) {
+            return "both";
+        }
+        return name ? "name" : price ? "price" : "none";
+    }
 }
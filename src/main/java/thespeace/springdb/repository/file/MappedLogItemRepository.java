@@ -0,0 +1,446 @@
+package thespeace.springdb.repository.file;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.util.ObjectUtils;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * <h1>메모리 매핑 로그 기반의 영속 저장소</h1>
+ * 메모리 저장소는 애플리케이션을 재시작하면 데이터가 모두 사라진다. 이 저장소는 SQL 데이터베이스 없이
+ * 파일 하나에 변경 내역을 이어서 기록(append-only log)하고, 재시작할 때 다시 읽어서 상태를 복구한다.
+ *
+ * <h2>쓰기</h2>
+ * <ul>
+ *     <li>save, update 는 상품의 전체 상태를 레코드 하나로 만들어 메모리 매핑된 로그 파일({@value #LOG_FILE})
+ *         뒤에 붙이고(WAL), 그 다음에 메모리의 맵에 반영한다. 쓰기는 한 번에 하나씩 직렬화된다.</li>
+ *     <li>레코드는 {@code [길이][CRC32][내용]} 형식이다. 쓰는 도중에 프로세스가 죽어서 잘린 레코드는 복구할 때
+ *         CRC 로 걸러낸다.</li>
+ *     <li>syncOnWrite 가 true 면 레코드마다 디스크에 force 한다. false 면 OS 페이지 캐시에 맡기므로 프로세스가
+ *         죽어도 데이터는 남지만, 전원이 나가면 마지막 일부가 유실될 수 있다.</li>
+ * </ul>
+ *
+ * <h2>스냅샷(compaction)</h2>
+ * 로그가 snapshotThreshold 바이트를 넘으면 현재 상태 전체를 스냅샷 파일({@value #SNAPSHOT_FILE})로 쓰고
+ * 로그 파일을 길이 0 으로 자른다. 스냅샷은 임시 파일에 쓴 뒤 원자적으로 이름을 바꾸기 때문에 중간에 죽어도 이전
+ * 스냅샷과 로그가 그대로 남는다. 모든 레코드는 상품의 전체 상태를 담고 있어서 같은 레코드를 다시 적용해도 결과가 같다.
+ *
+ * <h2>복구</h2>
+ * 시작할 때 스냅샷을 읽고, 그 뒤에 로그를 처음부터 유효한 레코드가 끝날 때까지 다시 적용한다.
+ * 두 파일 모두 NIO 로 매핑해서 순차적으로 읽는다. 첫 번째로 유효하지 않은 레코드부터 뒤는 파일을 잘라서 버린다.
+ */
+@Slf4j
+public class MappedLogItemRepository implements ItemRepository, AutoCloseable {
+
+    static final String LOG_FILE = "items.log";
+    static final String SNAPSHOT_FILE = "items.snapshot";
+
+    private static final int SNAPSHOT_MAGIC = 0x4954454D; //"ITEM"
+    private static final int INITIAL_LOG_CAPACITY = 16 * 1024 * 1024;
+    private static final int HEADER_SIZE = Integer.BYTES * 2; //length + crc
+    private static final int FIXED_PAYLOAD_SIZE = Byte.BYTES + Long.BYTES + Byte.BYTES + Integer.BYTES * 2 + Short.BYTES;
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+
+    private static final byte SAVE = 1;
+    private static final byte UPDATE = 2;
+
+    private static final int NULL_NAME = 1;
+    private static final int NULL_PRICE = 1 << 1;
+    private static final int NULL_QUANTITY = 1 << 2;
+
+    private final Path logPath;
+    private final Path snapshotPath;
+    private final long snapshotThreshold;
+    private final boolean syncOnWrite;
+
+    private final ConcurrentNavigableMap<Long, Item> store = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock(); //쓰는 동안 파일 I/O 를 하므로 가상 스레드를 고정(pinning)하지 않는 락
+
+    private FileChannel logChannel;
+    private MappedByteBuffer logBuffer;
+    private long sequence;
+
+    public MappedLogItemRepository(Path directory, long snapshotThreshold, boolean syncOnWrite) {
+        this.logPath = directory.resolve(LOG_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.snapshotThreshold = snapshotThreshold;
+        this.syncOnWrite = syncOnWrite;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open item log in " + directory, e);
+        }
+    }
+
+    @Override
+    public Item save(Item item) {
+        writeLock.lock();
+        try {
+            item.setId(++sequence);
+            Item stored = copyOf(item);
+            append(encode(SAVE, stored), syncOnWrite);
+            store.put(stored.getId(), stored);
+            snapshotIfNeeded();
+        } finally {
+            writeLock.unlock();
+        }
+        return item;
+    }
+
+    /**
+     * 레코드를 모두 이어서 쓰고, syncOnWrite 면 쓴 범위를 마지막에 한 번만 force 한다.
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        writeLock.lock();
+        try {
+            int start = logBuffer.position();
+            for (Item item : items) {
+                item.setId(++sequence);
+                Item stored = copyOf(item);
+                append(encode(SAVE, stored), false);
+                store.put(stored.getId(), stored);
+            }
+            if (syncOnWrite) {
+                logBuffer.force(start, logBuffer.position() - start);
+            }
+            snapshotIfNeeded();
+        } finally {
+            writeLock.unlock();
+        }
+        return new ArrayList<>(items);
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        writeLock.lock();
+        try {
+            if (!store.containsKey(itemId)) {
+                throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+            }
+            Item updated = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+            updated.setId(itemId);
+            append(encode(UPDATE, updated), syncOnWrite);
+            store.put(itemId, updated);
+            snapshotIfNeeded();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return Optional.ofNullable(store.get(id)).map(MappedLogItemRepository::copyOf);
+    }
+
+    /**
+     * 키셋 페이징은 id 로 정렬된 store 의 afterId/beforeId 위치부터 읽기 시작해서 size 개를 채우면 멈춘다.
+     * 이전 페이지는 거꾸로 읽은 뒤 뒤집는다.
+     */
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> result = search(cond).collect(Collectors.toList());
+        if (cond.backward()) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    /**
+     * store 를 id 순서대로 한 건씩 걸러서 복사한다. 열어둘 자원이 없으므로 닫지 않아도 되지만, 다른 구현체와 같이
+     * try-with-resources 로 사용한다.
+     */
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        return search(cond);
+    }
+
+    private Stream<Item> search(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        NavigableMap<Long, Item> range = store;
+        if (cond.getAfterId() != null) {
+            range = range.tailMap(cond.getAfterId(), false);
+        }
+        if (cond.getBeforeId() != null) {
+            range = range.headMap(cond.getBeforeId(), false).descendingMap();
+        }
+        return range.values().stream()
+                .filter(item -> ObjectUtils.isEmpty(itemName)
+                        || (item.getItemName() != null && item.getItemName().contains(itemName)))
+                .filter(item -> maxPrice == null
+                        || (item.getPrice() != null && item.getPrice() <= maxPrice))
+                .limit(cond.getSize() == null ? Long.MAX_VALUE : cond.getSize())
+                .map(MappedLogItemRepository::copyOf);
+    }
+
+    /**
+     * 종료할 때 스냅샷을 남겨서 다음 시작 시 다시 적용할 로그를 없앤다.
+     */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            if (logChannel == null) {
+                return;
+            }
+            try {
+                snapshot();
+                logChannel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to close item log", e);
+            } finally {
+                logChannel = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void append(ByteBuffer record, boolean force) {
+        try {
+            int start = logBuffer.position();
+            if (logBuffer.remaining() < record.remaining()) {
+                remap((long) start + record.remaining());
+            }
+            int length = record.remaining();
+            logBuffer.put(record);
+            if (force) {
+                logBuffer.force(start, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to append item log", e);
+        }
+    }
+
+    /**
+     * 메모리에 반영까지 끝난 다음에 호출해야 스냅샷에 마지막 변경이 빠지지 않는다.
+     */
+    private void snapshotIfNeeded() {
+        if (logBuffer.position() < snapshotThreshold) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write item snapshot", e);
+        }
+    }
+
+    private void remap(long required) throws IOException {
+        long capacity = logBuffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("item log exceeds 2GB, lower the snapshot threshold");
+        }
+        int position = logBuffer.position();
+        logBuffer.force();
+        logBuffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        logBuffer.position(position);
+    }
+
+    private void snapshot() throws IOException {
+        long start = System.nanoTime();
+        Path tmp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            for (Item item : store.values()) {
+                ByteBuffer record = encode(SAVE, item);
+                if (buffer.remaining() < record.remaining()) {
+                    writeFully(channel, buffer.flip());
+                    buffer.clear();
+                }
+                if (buffer.remaining() < record.remaining()) {
+                    writeFully(channel, record);
+                } else {
+                    buffer.put(record);
+                }
+            }
+            writeFully(channel, buffer.flip());
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotPath, ATOMIC_MOVE, REPLACE_EXISTING);
+        syncDirectory();
+
+        //스냅샷이 안전하게 저장된 후에 로그를 비운다. 파일 길이를 0 으로 자르는 것은 원자적이라 중간에 죽어도
+        //이전 로그가 통째로 남거나(스냅샷과 같은 상태로 다시 적용된다) 통째로 사라진다.
+        truncateLog(0);
+        log.info("item snapshot written, items={}, {}ms", store.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        if (Files.exists(snapshotPath)) {
+            try (FileChannel channel = FileChannel.open(snapshotPath, READ)) {
+                MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (snapshot.remaining() < Integer.BYTES || snapshot.getInt() != SNAPSHOT_MAGIC) {
+                    throw new IllegalStateException("invalid item snapshot " + snapshotPath);
+                }
+                Item item;
+                while ((item = readRecord(snapshot)) != null) {
+                    apply(item);
+                }
+                if (snapshot.hasRemaining()) {
+                    throw new IllegalStateException("corrupted item snapshot " + snapshotPath);
+                }
+            }
+        }
+        int snapshotItems = store.size();
+
+        logChannel = FileChannel.open(logPath, CREATE, READ, WRITE);
+        long capacity = Math.max(logChannel.size(), INITIAL_LOG_CAPACITY);
+        logBuffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        int replayed = 0;
+        Item item;
+        while ((item = readRecord(logBuffer)) != null) {
+            apply(item);
+            replayed++;
+        }
+        //첫 번째로 유효하지 않은 레코드(로그의 끝 또는 잘린 레코드)부터 뒤는 모두 버린다. 그 뒤에 예전 레코드가 남아 있으면
+        //새 기록이 그 앞까지 채웠을 때 다음 복구에서 예전 레코드가 다시 적용된다.
+        int end = logBuffer.position();
+        if (logChannel.size() > end) {
+            truncateLog(end);
+        }
+        log.info("item log recovered, snapshot={}, replayed={}, {}ms",
+                snapshotItems, replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 로그 파일을 length 바이트로 자르고 다시 매핑한다. 매핑이 파일 끝을 넘으면 파일이 늘어나고 늘어난 부분은 0 으로 읽힌다.
+     */
+    private void truncateLog(int length) throws IOException {
+        logChannel.truncate(length);
+        logChannel.force(true);
+        logBuffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(length, INITIAL_LOG_CAPACITY));
+        logBuffer.position(length);
+    }
+
+    /**
+     * 이름 변경(스냅샷 교체)을 디스크에 남긴다. 디렉토리를 열 수 없는 OS(윈도우)에서는 건너뛴다.
+     */
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(snapshotPath.getParent(), READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("cannot sync directory {}", snapshotPath.getParent(), e);
+        }
+    }
+
+    private void apply(Item item) {
+        store.put(item.getId(), item);
+        sequence = Math.max(sequence, item.getId());
+    }
+
+    private static ByteBuffer encode(byte type, Item item) {
+        byte[] name = item.getItemName() == null ? new byte[0] : item.getItemName().getBytes(UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("itemName is too long: " + name.length + " bytes");
+        }
+        int flags = (item.getItemName() == null ? NULL_NAME : 0)
+                | (item.getPrice() == null ? NULL_PRICE : 0)
+                | (item.getQuantity() == null ? NULL_QUANTITY : 0);
+        int payloadSize = FIXED_PAYLOAD_SIZE + name.length;
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        record.putInt(payloadSize)
+                .putInt(0) //crc
+                .put(type)
+                .putLong(item.getId())
+                .put((byte) flags)
+                .putInt(item.getPrice() == null ? 0 : item.getPrice())
+                .putInt(item.getQuantity() == null ? 0 : item.getQuantity())
+                .putShort((short) name.length)
+                .put(name);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, payloadSize);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.flip();
+    }
+
+    /**
+     * buffer 의 현재 위치에서 레코드 하나를 읽는다. 로그의 끝(0)이거나 잘린 레코드면 위치를 옮기지 않고 null 을 반환한다.
+     */
+    private static Item readRecord(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length < FIXED_PAYLOAD_SIZE || length > buffer.remaining() - HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(start + HEADER_SIZE, length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != buffer.getInt(start + Integer.BYTES)) {
+            return null;
+        }
+
+        payload.rewind();
+        payload.get(); //type
+        long id = payload.getLong();
+        int flags = payload.get();
+        int price = payload.getInt();
+        int quantity = payload.getInt();
+        byte[] name = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(name);
+
+        Item item = new Item(
+                (flags & NULL_NAME) != 0 ? null : new String(name, UTF_8),
+                (flags & NULL_PRICE) != 0 ? null : price,
+                (flags & NULL_QUANTITY) != 0 ? null : quantity);
+        item.setId(id);
+        buffer.position(start + HEADER_SIZE + length);
+        return item;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static Item copyOf(Item item) {
+        Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        return copy;
+    }
+}
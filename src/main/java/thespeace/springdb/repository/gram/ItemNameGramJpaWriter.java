@@ -0,0 +1,79 @@
+package thespeace.springdb.repository.gram;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import thespeace.springdb.domain.Item;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <h2>item_name_gram 갱신 - JPQL</h2>
+ * UPDATE 를 직접 실행해서 상품을 수정하면 엔티티를 거치지 않으므로 ItemNameGramListener 가 호출되지 않는다.
+ * 이때는 이 클래스로 같은 영속성 컨텍스트(트랜잭션) 안에서 n-gram 을 다시 저장한다.
+ * <ul>
+ *     <li>ItemNameGram 을 persist 하지 않는다. 같은 트랜잭션에서 같은 상품을 두 번 수정해도 영속성 컨텍스트에 남은
+ *         ItemNameGram 과 키가 겹치지 않는다.</li>
+ *     <li>이전 n-gram 은 JPQL DELETE 로 지운다. 하이버네이트가 item_name_gram 이 바뀐 것을 알고 이 테이블을 읽는 검색 결과
+ *         캐시를 무효로 만든다. 네이티브 SQL 은 쿼리 공간을 지정하지 않으면 어떤 테이블을 바꾸는지 하이버네이트가 알 수 없어서
+ *         2차 캐시 전체를 비운다.</li>
+ *     <li>새 n-gram 은 Session.doWork 로 영속성 컨텍스트의 JDBC 커넥션을 받아 한 번의 배치로 저장한다. JPQL INSERT 는
+ *         n-gram 하나마다 문장을 하나씩 실행한다. 쿼리가 아니므로 하이버네이트가 캐시를 비우지 않고, 앞의 DELETE 나 함께
+ *         저장한 상품의 INSERT 가 검색 결과 캐시를 무효로 만든다.</li>
+ * </ul>
+ */
+public class ItemNameGramJpaWriter {
+
+    private final EntityManager em;
+
+    public ItemNameGramJpaWriter(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * 저장한(플러시한) 상품들의 n-gram 을 한 번의 JDBC 배치로 저장한다. ItemNameGramListener.deferInserts 와 함께 사용한다.
+     */
+    public void insertAll(Collection<Item> items) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Item item : items) {
+            addRows(rows, item.getId(), item.getItemName());
+        }
+        batchInsert(rows);
+    }
+
+    /**
+     * 상품명이 바뀌었을 수 있으므로 이전 n-gram 을 지우고 다시 저장한다.
+     */
+    public void replace(Long itemId, String itemName) {
+        em.createQuery("delete from ItemNameGram g where g.itemId = :itemId")
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+        List<Object[]> rows = new ArrayList<>();
+        addRows(rows, itemId, itemName);
+        batchInsert(rows);
+    }
+
+    private void batchInsert(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(ItemNameGramWriter.INSERT)) {
+                for (Object[] row : rows) {
+                    pstmt.setString(1, (String) row[0]);
+                    pstmt.setLong(2, (Long) row[1]);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        });
+    }
+
+    private static void addRows(List<Object[]> rows, Long itemId, String itemName) {
+        for (String gram : ItemNameGrams.grams(itemName)) {
+            rows.add(new Object[]{gram, itemId});
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package thespeace.springdb.repository.gram;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import thespeace.springdb.domain.Item;
+
+import javax.sql.DataSource;
+import java.util.function.Supplier;
+
+/**
+ * <h2>JPA 엔티티 리스너 - item_name_gram 동기화</h2>
+ * JPA 리포지토리와 ItemServiceV2 는 변경 감지로 UPDATE 를 실행하므로, 리포지토리 코드 대신 엔티티 생명주기 콜백에서 n-gram 을
+ * 갱신한다. 하이버네이트는 INSERT, UPDATE, DELETE 를 실행한 직후(플러시 중)에 콜백을 호출한다.
+ * <ul>
+ *     <li>스프링 부트는 하이버네이트가 엔티티 리스너를 스프링 빈 팩토리로 만들도록(SpringBeanContainer) 설정하므로 생성자로
+ *         DataSource 를 주입받을 수 있다.</li>
+ *     <li>JpaTransactionManager 는 JPA 트랜잭션의 JDBC 커넥션을 JdbcTemplate 에도 공유하므로 같은 트랜잭션에서 실행된다.</li>
+ *     <li>콜백은 엔티티마다 호출되므로 postPersist 는 상품 하나마다 배치를 하나씩 보낸다. 여러 상품을 저장하는 saveAll 은
+ *         {@link #deferInserts} 안에서 persist, flush 하고 저장한 상품의 n-gram 을 한 번의 배치로 저장한다.</li>
+ * </ul>
+ */
+public class ItemNameGramListener {
+
+    private static final ThreadLocal<Boolean> INSERTS_DEFERRED = new ThreadLocal<>();
+
+    private final ItemNameGramWriter writer;
+
+    public ItemNameGramListener(DataSource dataSource) {
+        this.writer = new ItemNameGramWriter(dataSource);
+    }
+
+    /**
+     * 이 스레드에서 action 을 실행하는 동안 postPersist 가 n-gram 을 저장하지 않는다. 호출하는 쪽이 저장한 상품의 n-gram 을
+     * 직접 저장해야 한다.(수정, 삭제 콜백은 그대로 동작한다)
+     */
+    public static <T> T deferInserts(Supplier<T> action) {
+        Boolean previous = INSERTS_DEFERRED.get();
+        INSERTS_DEFERRED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                INSERTS_DEFERRED.remove();
+            }
+        }
+    }
+
+    @PostPersist
+    public void postPersist(Item item) {
+        if (INSERTS_DEFERRED.get() == null) {
+            writer.insert(item.getId(), item.getItemName());
+        }
+    }
+
+    @PostUpdate
+    public void postUpdate(Item item) {
+        writer.replace(item.getId(), item.getItemName());
+    }
+
+    @PostRemove
+    public void postRemove(Item item) {
+        writer.delete(item.getId());
+    }
+}
@@ -0,0 +1,65 @@
+package thespeace.springdb.repository.gram;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import thespeace.springdb.domain.Item;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <h2>item_name_gram 테이블 갱신</h2>
+ * 상품을 저장, 수정할 때 같은 트랜잭션(커넥션) 안에서 상품명의 n-gram 을 저장한다. JdbcTemplate 은 스프링 트랜잭션이 있으면
+ * 트랜잭션 동기화 매니저의 커넥션을 사용하므로, 상품 INSERT/UPDATE 가 롤백되면 n-gram 도 함께 롤백된다.
+ */
+public class ItemNameGramWriter {
+
+    static final String INSERT = "insert into item_name_gram(gram, item_id) values (?, ?)";
+    static final String DELETE = "delete from item_name_gram where item_id = ?";
+
+    private final JdbcTemplate template;
+
+    public ItemNameGramWriter(DataSource dataSource) {
+        this.template = new JdbcTemplate(dataSource);
+    }
+
+    public void insert(Long itemId, String itemName) {
+        List<Object[]> rows = new ArrayList<>();
+        addRows(rows, itemId, itemName);
+        if (!rows.isEmpty()) {
+            template.batchUpdate(INSERT, rows);
+        }
+    }
+
+    /**
+     * 여러 상품의 n-gram 을 한 번의 배치로 저장한다.
+     */
+    public void insertAll(Collection<Item> items) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Item item : items) {
+            addRows(rows, item.getId(), item.getItemName());
+        }
+        if (!rows.isEmpty()) {
+            template.batchUpdate(INSERT, rows);
+        }
+    }
+
+    /**
+     * 상품명이 바뀌었을 수 있으므로 이전 n-gram 을 지우고 다시 저장한다.
+     */
+    public void replace(Long itemId, String itemName) {
+        delete(itemId);
+        insert(itemId, itemName);
+    }
+
+    public void delete(Long itemId) {
+        template.update(DELETE, itemId);
+    }
+
+    private static void addRows(List<Object[]> rows, Long itemId, String itemName) {
+        for (String gram : ItemNameGrams.grams(itemName)) {
+            rows.add(new Object[]{gram, itemId});
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package thespeace.springdb.repository.gram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h2>상품명 n-gram</h2>
+ * {@code like '%검색어%'} 는 앞에 와일드카드가 있어서 B-tree 인덱스를 사용할 수 없고 항상 item 테이블 전체를 읽는다.<br>
+ * 그래서 상품명을 길이 {@value #GRAM_SIZE} 의 조각(n-gram)으로 나눠서 item_name_gram(gram, item_id) 테이블에 따로 저장하고,
+ * 검색어의 n-gram 을 모두 가진 상품만 후보로 고른다. (gram, item_id) 가 기본 키라서 인덱스로 찾는다.
+ * <ul>
+ *     <li>후보에는 n-gram 은 모두 있지만 순서가 달라서 실제로는 포함하지 않는 상품이 있을 수 있다. 따라서 후보에 대해서만
+ *         기존 like 조건을 한 번 더 검사한다. 결과는 like 만 사용할 때와 같다.</li>
+ *     <li>검색어가 {@value #GRAM_SIZE} 글자보다 짧으면 n-gram 을 만들 수 없으므로 like 만 사용한다(전체 스캔).</li>
+ *     <li>메모리 저장소의 NGramIndex 와 같은 규칙(char 단위, 대소문자 구분)을 사용한다.</li>
+ * </ul>
+ */
+public final class ItemNameGrams {
+
+    public static final int GRAM_SIZE = 3;
+
+    private ItemNameGrams() {
+    }
+
+    /**
+     * n-gram 색인으로 후보를 줄일 수 있는 검색어인지.
+     */
+    public static boolean indexable(String itemName) {
+        return itemName != null && itemName.length() >= GRAM_SIZE;
+    }
+
+    /**
+     * 중복을 제거한 n-gram. 너무 짧으면 빈 리스트.
+     */
+    public static List<String> grams(String text) {
+        if (!indexable(text)) {
+            return List.of();
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return new ArrayList<>(grams);
+    }
+}
@@ -0,0 +1,16 @@
+package thespeace.springdb.repository.id;
+
+/**
+ * <h2>상품 id 발급기</h2>
+ * INSERT 전에 id 를 미리 정해두면 데이터베이스가 생성한 키를 다시 조회할 필요가 없고, 여러 INSERT 를 JDBC 배치로
+ * 묶을 수 있다. 리포지토리는 저장할 때마다 이 인터페이스로 id 를 받아서 INSERT SQL에 직접 넣는다.
+ * <ul>
+ *     <li>{@link SequenceIdAllocator} : 데이터베이스 시퀀스에서 블록 단위로 받아서 나눠준다. (JDBC, MyBatis)</li>
+ *     <li>{@link LocalIdAllocator} : 메모리에서만 발급한다. (메모리 저장소)</li>
+ * </ul>
+ * 구현체는 여러 스레드에서 동시에 호출해도 같은 id 를 두 번 주지 않아야 한다.
+ */
+public interface IdAllocator {
+
+    long nextId();
+}
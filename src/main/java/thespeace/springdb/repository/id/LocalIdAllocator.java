@@ -0,0 +1,16 @@
+package thespeace.springdb.repository.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 데이터베이스 없이 1부터 순서대로 발급한다. CAS 기반이라 락을 잡지 않는다.
+ */
+public class LocalIdAllocator implements IdAllocator {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    public long nextId() {
+        return sequence.incrementAndGet();
+    }
+}
@@ -0,0 +1,54 @@
+package thespeace.springdb.repository.id;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h2>시퀀스 블록 할당(pooled-lo)</h2>
+ * 시퀀스를 {@code increment by allocationSize} 로 만들어 두고, 시퀀스 값 하나를 블록의 시작(lo)으로 사용해서
+ * {@code lo ~ lo + allocationSize - 1} 을 메모리에서 나눠준다. 데이터베이스 왕복은 allocationSize 개마다 한 번이다.
+ * <ul>
+ *     <li>JPA 의 Item 도 같은 시퀀스를 pooled-lo 방식({@code hibernate.id.optimizer.pooled.preferred=pooled-lo})으로
+ *         사용하기 때문에, JDBC, MyBatis, JPA 를 섞어서 저장해도 id 가 겹치지 않는다.</li>
+ *     <li>시퀀스는 트랜잭션과 상관없이 증가한다. 롤백하거나 애플리케이션을 재시작하면 받아둔 블록의 남은 id 는 사용되지 않는다.
+ *         (id 에 빈 번호가 생길 수 있다.)</li>
+ *     <li>H2 문법({@code select next value for ...})을 사용한다.</li>
+ *     <li>블록을 받는 동안 SQL 을 실행하므로 synchronized 대신 ReentrantLock 을 사용한다. 가상 스레드가 synchronized 안에서
+ *         I/O 를 기다리면 캐리어 스레드를 붙잡는다(pinning).</li>
+ * </ul>
+ */
+public class SequenceIdAllocator implements IdAllocator {
+
+    public static final String ITEM_SEQUENCE = "item_seq";
+    public static final int ALLOCATION_SIZE = 50; //Item 의 @SequenceGenerator, schema.sql 의 increment by 와 같아야 한다.
+
+    private final JdbcTemplate template;
+    private final String sql;
+    private final int allocationSize;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long next;
+    private long limit;
+
+    public SequenceIdAllocator(DataSource dataSource, String sequenceName, int allocationSize) {
+        this.template = new JdbcTemplate(dataSource);
+        this.sql = "select next value for " + sequenceName;
+        this.allocationSize = allocationSize;
+    }
+
+    @Override
+    public long nextId() {
+        lock.lock();
+        try {
+            if (next == limit) {
+                next = template.queryForObject(sql, Long.class);
+                limit = next + allocationSize;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,73 +2,120 @@ package thespeace.springdb.repository.jdbctemplate;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.domain.ItemRowMapper;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGramWriter;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+import thespeace.springdb.repository.id.IdAllocator;
+import thespeace.springdb.repository.shape.QueryShapeAware;
+import thespeace.springdb.repository.shape.QueryShapeRegistry;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * <h1>JdbcTemplate</h1>
  */
 @Slf4j
 @Repository
-public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
+public class JdbcTemplateItemRepositoryV1 implements ItemRepository, QueryShapeAware {
+
+    private static final int FETCH_SIZE = 500;
 
     //dataSource 를 의존 관계 주입 받고 생성자 내부에서 JdbcTemplate 을 생성(관례상 이 방법을 많이 사용, 물론 스프링 빈으로 등록하고 주입받아도 된다.)
     private final JdbcTemplate template;
+    private final IdAllocator idAllocator;
+    private final QueryShapeRegistry<String> searchSqls;
+    private final ItemNameGramWriter nameGrams;
 
-    public JdbcTemplateItemRepositoryV1(DataSource dataSource) {
+    public JdbcTemplateItemRepositoryV1(DataSource dataSource, IdAllocator idAllocator) {
         this.template = new JdbcTemplate(dataSource);
+        this.template.setFetchSize(FETCH_SIZE); //ResultSet 을 한 번에 가져올 행 수 힌트. streamAll 에서 메모리를 일정하게 유지한다.
+        this.idAllocator = idAllocator;
+        this.searchSqls = new QueryShapeRegistry<>(getClass().getSimpleName(), JdbcTemplateItemRepositoryV1::searchSql);
+        this.nameGrams = new ItemNameGramWriter(dataSource);
     }
 
     /**
      * <h2>데이터 저장</h2>
      * <ul>
-     *     <li>{@code KeyHolder}와 {@code connection.prepareStatement(sql, new String[]{"id"})}를 사용해서 id 를
-     *         지정해주면 INSERT 쿼리 실행 이후에 데이터베이스에서 생성된 ID 값을 조회할 수 있다.</li>
+     *     <li>id 는 IdAllocator 에서 미리 받아서 INSERT SQL에 직접 넣는다. 데이터베이스가 생성한 키를 KeyHolder 로
+     *         다시 조회할 필요가 없다.</li>
+     *     <li>상품명 검색에 사용하는 item_name_gram 도 함께 저장한다.(ItemNameGrams 참고)</li>
      * </ul>
      */
     @Override
     public Item save(Item item) {
-        String sql  = "insert into item(item_name, price, quantity) values (?,?,?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        template.update(connection -> {
-            //자동 증가 키
-            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
-            ps.setString(1, item.getItemName());
-            ps.setInt(2, item.getPrice());
-            ps.setInt(3, item.getQuantity());
-            return ps;
-        }, keyHolder);
-
-        long key = keyHolder.getKey().longValue();
-        item.setId(key);
+        String sql  = "insert into item(id, item_name, price, quantity) values (?,?,?,?)";
+        item.setId(idAllocator.nextId());
+        template.update(sql, item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+        nameGrams.insert(item.getId(), item.getItemName());
         return item;
     }
 
+    /**
+     * <h2>데이터 일괄 저장</h2>
+     * <ul>
+     *     <li>{@code template.batchUpdate(sql, pss)} : 같은 PreparedStatement 에 파라미터를 바꿔가며
+     *         addBatch() 하고 executeBatch() 한 번으로 실행한다. 상품마다 데이터베이스를 왕복하지 않는다.</li>
+     *     <li>id 를 미리 할당하므로 생성된 키를 돌려받을 필요가 없다.</li>
+     * </ul>
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        String sql = "insert into item(id, item_name, price, quantity) values (?,?,?,?)";
+        List<Item> list = new ArrayList<>(items);
+        list.forEach(item -> item.setId(idAllocator.nextId()));
+        template.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Item item = list.get(i);
+                ps.setLong(1, item.getId());
+                ps.setString(2, item.getItemName());
+                ps.setObject(3, item.getPrice(), Types.INTEGER); //null 이면 setInt 에서 언박싱하다 NPE 가 난다.
+                ps.setObject(4, item.getQuantity(), Types.INTEGER);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return list.size();
+            }
+        });
+        nameGrams.insertAll(list);
+        return list;
+    }
+
     /**
      * <h2>데이터 업데이트</h2>
      */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        String sql = "update item set item_name=?, price=?, quantity=?, where id =?";
-        template.update(sql,
+        String sql = "update item set item_name=?, price=?, quantity=? where id =?";
+        int updated = template.update(sql,
                 updateParam.getItemName(),
                 updateParam.getPrice(),
                 updateParam.getQuantity(),
                 itemId);
+        if (updated == 0) { //없는 id 면 색인에 n-gram 을 남기지 않는다.
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+        }
+        nameGrams.replace(itemId, updateParam.getItemName());
     }
 
     /**
@@ -88,7 +135,7 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
      */
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id = ?";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id = ?";
         try {
             Item item = template.queryForObject(sql, itemRowMapper(), id);
             return Optional.of(item);
@@ -114,21 +161,66 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
      */
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> items = template.query(searchSqls.get(cond), itemRowMapper(), searchParams(cond));
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
+
+    /**
+     * <h2>데이터 스트림으로 조회</h2>
+     * <ul>
+     *     <li>{@code template.queryForStream()}
+     *         <ul>
+     *             <li>ResultSet 을 열어둔 채로 Stream 을 반환하고, 다음 요소를 요청할 때마다 한 행씩 RowMapper 로
+     *                 변환한다. query() 처럼 결과 전체를 List 로 모으지 않는다.</li>
+     *             <li>Stream 을 닫을 때 ResultSet, Statement 를 닫고 커넥션을 반납한다. 따라서 반드시
+     *                 try-with-resources 로 닫아야 한다.</li>
+     *         </ul>
+     *     </li>
+     * </ul>
+     */
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        return template.queryForStream(searchSqls.get(cond), itemRowMapper(), searchParams(cond));
+    }
+
+    @Override
+    public QueryShapeRegistry<?> queryShapes() {
+        return searchSqls;
+    }
+
+    /**
+     * <h2>검색 조건의 모양으로 동적 쿼리 생성</h2>
+     * SQL 은 조건의 값이 아니라 어떤 조건이 들어있는지에만 의존하므로, 모양마다 한 번만 만들어서 searchSqls 에 저장한다.
+     * 같은 모양은 항상 같은 SQL 문자열이 되므로 데이터베이스도 파싱해 둔 문장을 재사용할 수 있다.<br>
+     * 상품명이 3글자 이상이면 item_name_gram 에서 검색어의 n-gram 을 모두 가진 상품만 후보로 고르고, 후보에 대해서만 like 로
+     * 확인한다. 앞에 % 가 있는 like 로 item 전체를 읽지 않는다.
+     */
+    private static String searchSql(ItemSearchCond cond) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
 
-        String sql = "select id, item_name, price, quantity from item";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item";
 
         //동적 쿼리
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (StringUtils.hasText(itemName) || maxPrice != null || afterId != null || beforeId != null) {
             sql += " where";
         }
 
         boolean andFlag = false;
-        List<Object> param = new ArrayList<>();
         if (StringUtils.hasText(itemName)) {
+            if (ItemNameGrams.indexable(itemName)) {
+                sql += " id in (select item_id from item_name_gram where gram = any(?)" +
+                        " group by item_id having count(*) = ?) and";
+            }
             sql += " item_name like concat('%',?,'%')";
-            param.add(itemName);
             andFlag = true;
         }
 
@@ -137,11 +229,58 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
                 sql += " and";
             }
             sql += " price <= ?";
-            param.add(maxPrice);
+            andFlag = true;
+        }
+
+        if (afterId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > ?";
+            andFlag = true;
         }
 
-        log.info("sql={}", sql);
-        return template.query(sql, itemRowMapper(), param.toArray());
+        if (beforeId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id < ?";
+        }
+
+        //키셋 페이징 : OFFSET 으로 앞의 행을 건너뛰지 않고 PK 인덱스에서 afterId, beforeId 위치를 바로 찾는다.
+        if (cond.getSize() != null) {
+            sql += cond.backward() ? " order by id desc" : " order by id";
+            sql += " limit ?";
+        }
+        return sql;
+    }
+
+    /**
+     * searchSql 의 {@code ?} 순서대로 바인딩할 파라미터를 만든다. 호출마다 실행되는 부분은 여기뿐이다.
+     */
+    private static Object[] searchParams(ItemSearchCond cond) {
+        List<Object> param = new ArrayList<>(7);
+        if (StringUtils.hasText(cond.getItemName())) {
+            if (ItemNameGrams.indexable(cond.getItemName())) {
+                List<String> grams = ItemNameGrams.grams(cond.getItemName());
+                param.add(grams.toArray(String[]::new));
+                param.add(grams.size());
+            }
+            param.add(cond.getItemName());
+        }
+        if (cond.getMaxPrice() != null) {
+            param.add(cond.getMaxPrice());
+        }
+        if (cond.getAfterId() != null) {
+            param.add(cond.getAfterId());
+        }
+        if (cond.getBeforeId() != null) {
+            param.add(cond.getBeforeId());
+        }
+        if (cond.getSize() != null) {
+            param.add(cond.getSize());
+        }
+        return param.toArray();
     }
 
     /**
@@ -157,13 +296,8 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
      * </pre></blockquote>
      */
     private RowMapper<Item> itemRowMapper() {
-        return (rs, rowNum) -> {
-            Item item = new Item();
-            item.setId(rs.getLong("id"));
-            item.setItemName(rs.getString("item_name"));
-            item.setPrice(rs.getInt("price"));
-            item.setQuantity(rs.getInt("quantity"));
-            return item;
-        };
+        //컴파일 시점에 생성된 RowMapper. 위 루프 안에서 컬럼을 인덱스로 읽고 setter 를 직접 호출한다.
+        //직접 작성했던 람다는 price, quantity 가 null 이면 0 으로 읽었지만, 생성된 RowMapper 는 wasNull() 로 null 을 유지한다.
+        return ItemRowMapper.INSTANCE;
     }
 }
@@ -2,28 +2,35 @@ package thespeace.springdb.repository.jdbctemplate;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.domain.ItemRowMapper;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGramWriter;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+import thespeace.springdb.repository.id.IdAllocator;
+import thespeace.springdb.repository.shape.QueryShapeAware;
+import thespeace.springdb.repository.shape.QueryShapeRegistry;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * <h1>NamedParameterJdbcTemplate</h1>
@@ -32,34 +39,58 @@ import java.util.Optional;
  */
 @Slf4j
 @Repository
-public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
+public class JdbcTemplateItemRepositoryV2 implements ItemRepository, QueryShapeAware {
+
+    private static final int FETCH_SIZE = 500;
 
     private final NamedParameterJdbcTemplate template;
+    private final IdAllocator idAllocator;
+    private final QueryShapeRegistry<ParsedSearchSql> searchSqls;
+    private final ItemNameGramWriter nameGrams;
 
-    public JdbcTemplateItemRepositoryV2(DataSource dataSource) {
-        this.template = new NamedParameterJdbcTemplate(dataSource);
+    public JdbcTemplateItemRepositoryV2(DataSource dataSource, IdAllocator idAllocator) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE); //ResultSet 을 한 번에 가져올 행 수 힌트. streamAll 에서 메모리를 일정하게 유지한다.
+        this.template = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.idAllocator = idAllocator;
+        this.searchSqls = new QueryShapeRegistry<>(getClass().getSimpleName(),
+                cond -> ParsedSearchSql.parse(searchSql(cond)));
+        this.nameGrams = new ItemNameGramWriter(dataSource); //상품명 검색 색인(item_name_gram)
     }
 
     /**
      * <h2>데이터 저장</h2>
      * <ul>
      *     <li>SQL에서 다음과 같이 `?` 대신에 `:파라미터이름` 을 받는 것을 확인할 수 있다.</li>
-     *     <li>추가로 NamedParameterJdbcTemplate 은 데이터베이스가 생성해주는 키를 매우 쉽게 조회하는 기능도 제공해준다.</li>
+     *     <li>id 는 IdAllocator 에서 미리 받아서 넣기 때문에 KeyHolder 로 생성된 키를 조회하지 않는다.</li>
      * </ul>
      */
     @Override
     public Item save(Item item) {
-        String sql  = "insert into item(item_name, price, quantity)" +
-                "values (:itemName, :price, :quantity)";
+        String sql  = "insert into item(id, item_name, price, quantity)" +
+                "values (:id, :itemName, :price, :quantity)";
 
+        item.setId(idAllocator.nextId());
         SqlParameterSource param = new BeanPropertySqlParameterSource(item);
+        template.update(sql, param);
+        nameGrams.insert(item.getId(), item.getItemName());
+        return item;
+    }
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        template.update(sql, param, keyHolder);
+    /**
+     * <h2>데이터 일괄 저장</h2>
+     * id 를 미리 할당한 뒤 {@code template.batchUpdate(sql, batchArgs)} 로 한 번의 executeBatch() 로 저장한다.
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        String sql  = "insert into item(id, item_name, price, quantity)" +
+                "values (:id, :itemName, :price, :quantity)";
 
-        long key = keyHolder.getKey().longValue();
-        item.setId(key);
-        return item;
+        List<Item> list = new ArrayList<>(items);
+        list.forEach(item -> item.setId(idAllocator.nextId()));
+        template.batchUpdate(sql, SqlParameterSourceUtils.createBatch(list));
+        nameGrams.insertAll(list);
+        return list;
     }
 
     /**
@@ -90,7 +121,11 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
                 .addValue("quantity", updateParam.getQuantity())
                 .addValue("id", itemId); //MapSqlParameterSource : Map 과 유사한데, SQL 타입을 지정할 수 있는 등 SQL에 좀 더 특화된 기능을 제공.
 
-        template.update(sql, param);
+        int updated = template.update(sql, param);
+        if (updated == 0) { //없는 id 면 색인에 n-gram 을 남기지 않는다.
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+        }
+        nameGrams.replace(itemId, updateParam.getItemName());
     }
 
     /**
@@ -98,7 +133,7 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
      */
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id = :id";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id = :id";
         try {
             Map<String, Object> param = Map.of("id", id); //단순히 Map 을 사용하여 바인딩.
             Item item = template.queryForObject(sql, param, itemRowMapper());
@@ -116,19 +151,56 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
      */
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
+        SqlParameterSource param = ParsedSearchSql.param(cond); //검색 조건 + 상품명 n-gram
+        ParsedSearchSql search = searchSqls.get(cond);
+        List<Item> items = template.getJdbcTemplate().query(search.sql(), itemRowMapper(), search.args(param));
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
+
+    /**
+     * <h2>데이터 스트림으로 조회</h2>
+     * {@code template.queryForStream()} 은 ResultSet 을 열어둔 채로 한 행씩 변환하는 Stream 을 반환한다.
+     * Stream 을 닫아야 커넥션이 반납되므로 반드시 try-with-resources 로 사용한다.
+     */
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        SqlParameterSource param = ParsedSearchSql.param(cond);
+        ParsedSearchSql search = searchSqls.get(cond);
+        return template.getJdbcTemplate().queryForStream(search.sql(), itemRowMapper(), search.args(param));
+    }
+
+    @Override
+    public QueryShapeRegistry<?> queryShapes() {
+        return searchSqls;
+    }
+
+    /**
+     * 검색 조건의 모양으로 동적 쿼리를 만든다. 모양마다 한 번만 호출되고 결과는 파싱해서 searchSqls 에 저장한다.
+     */
+    private static String searchSql(ItemSearchCond cond) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
 
-        SqlParameterSource param = new BeanPropertySqlParameterSource(cond); //자바빈 프로퍼티 규약을 통해서 자동으로 파라미터 객체를 생성.
-
-        String sql = "select id, item_name, price, quantity from item";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item";
         //동적 쿼리
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (StringUtils.hasText(itemName) || maxPrice != null || afterId != null || beforeId != null) {
             sql += " where";
         }
 
         boolean andFlag = false;
         if (StringUtils.hasText(itemName)) {
+            if (ItemNameGrams.indexable(itemName)) { //n-gram 색인으로 후보를 고른 뒤 like 로 확인한다. (JdbcTemplateItemRepositoryV1 참고)
+                sql += " id in (select item_id from item_name_gram where gram = any(:itemNameGrams)" +
+                        " group by item_id having count(*) = :itemNameGramCount) and";
+            }
             sql += " item_name like concat('%',:itemName,'%')";
             andFlag = true;
         }
@@ -138,10 +210,30 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
                 sql += " and";
             }
             sql += " price <= :maxPrice";
+            andFlag = true;
+        }
+
+        if (afterId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > :afterId";
+            andFlag = true;
+        }
+
+        if (beforeId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id < :beforeId";
         }
 
-        log.info("sql={}", sql);
-        return template.query(sql, param, itemRowMapper());
+        //키셋 페이징 : OFFSET 으로 앞의 행을 건너뛰지 않고 PK 인덱스에서 afterId, beforeId 위치를 바로 찾는다.
+        if (cond.getSize() != null) {
+            sql += cond.backward() ? " order by id desc" : " order by id";
+            sql += " limit :size";
+        }
+        return sql;
     }
 
     /**
@@ -155,9 +247,14 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
      * item.setId(rs.getLong("id"));
      * item.setPrice(rs.getInt("price"));
      * </pre></blockquote>
+     *
+     * 다만 newInstance() 를 호출할 때마다 클래스를 다시 분석하고, 행마다 컬럼 이름으로 프로퍼티를 찾아 리플렉션으로
+     * 값을 넣는다. 그래서 지금은 컴파일 시점에 생성된 ItemRowMapper({@code @GeneratedRowMapper})를 사용한다.
+     * 생성된 코드는 컬럼을 인덱스로 읽고 setter 를 직접 호출하므로 SELECT 절은 {@code ItemRowMapper.COLUMNS} 를 사용한다.
      */
     private RowMapper<Item> itemRowMapper() {
-        return BeanPropertyRowMapper.newInstance(Item.class); //camel 변환 지원.
+//        return BeanPropertyRowMapper.newInstance(Item.class); //camel 변환 지원.
+        return ItemRowMapper.INSTANCE;
     }
 }
 
@@ -2,26 +2,35 @@ package thespeace.springdb.repository.jdbctemplate;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.domain.ItemRowMapper;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGramWriter;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+import thespeace.springdb.repository.id.IdAllocator;
+import thespeace.springdb.repository.shape.QueryShapeAware;
+import thespeace.springdb.repository.shape.QueryShapeRegistry;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * <h1>JdbcTemplate - SimpleJdbcInsert</h1>
@@ -31,32 +40,58 @@ import java.util.Optional;
  */
 @Slf4j
 @Repository
-public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
+public class JdbcTemplateItemRepositoryV3 implements ItemRepository, QueryShapeAware {
+
+    private static final int FETCH_SIZE = 500;
 
     private final NamedParameterJdbcTemplate template;
     private final SimpleJdbcInsert jdbcInsert;
-
-    public JdbcTemplateItemRepositoryV3(DataSource dataSource) {
-        this.template = new NamedParameterJdbcTemplate(dataSource);
+    private final IdAllocator idAllocator;
+    private final QueryShapeRegistry<ParsedSearchSql> searchSqls;
+    private final ItemNameGramWriter nameGrams;
+
+    public JdbcTemplateItemRepositoryV3(DataSource dataSource, IdAllocator idAllocator) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE); //ResultSet 을 한 번에 가져올 행 수 힌트. streamAll 에서 메모리를 일정하게 유지한다.
+        this.template = new NamedParameterJdbcTemplate(jdbcTemplate);
         this.jdbcInsert = new SimpleJdbcInsert(dataSource)
-                .withTableName("item") //데이터를 저장할 테이블 명을 지정.
-                .usingGeneratedKeyColumns("id"); //key 를 생성하는 PK 컬럼 명을 지정.
+                .withTableName("item"); //데이터를 저장할 테이블 명을 지정.
+//                .usingGeneratedKeyColumns("id"); //key 를 생성하는 PK 컬럼 명을 지정. id 를 미리 할당하므로 사용하지 않는다.
 //                .usingColumns("item_name", "price", "quantity"); //INSERT SQL에 사용할 컬럼을 지정한다. 특정 값만 저장하고 싶을 때 사용한다. 생략 가능.
+        this.idAllocator = idAllocator;
+        this.searchSqls = new QueryShapeRegistry<>(getClass().getSimpleName(),
+                cond -> ParsedSearchSql.parse(searchSql(cond)));
+        this.nameGrams = new ItemNameGramWriter(dataSource); //상품명 검색 색인(item_name_gram)
     }
 
     /**
      * <h2>데이터 저장</h2>
-     * {@code jdbcInsert.executeAndReturnKey(param)}을 사용해서 INSERT SQL을 실행하고, 생성된 키 값도 매우
-     * 편리하게 조회할 수 있다.
+     * IdAllocator 에서 받은 id 를 채운 뒤 {@code jdbcInsert.execute(param)}을 사용해서 INSERT SQL을 실행한다.
+     * 생성된 키를 조회하는 {@code executeAndReturnKey()} 는 필요 없다.
      */
     @Override
     public Item save(Item item) {
+        item.setId(idAllocator.nextId());
         SqlParameterSource param = new BeanPropertySqlParameterSource(item);
-        Number key = jdbcInsert.executeAndReturnKey(param);
-        item.setId(key.longValue());
+        jdbcInsert.execute(param);
+        nameGrams.insert(item.getId(), item.getItemName());
         return item;
     }
 
+    /**
+     * <h2>데이터 일괄 저장</h2>
+     * id 를 미리 할당하므로 {@code jdbcInsert.executeBatch()} 로 한 번에 저장할 수 있다.
+     * (executeBatch 는 영향받은 행 수만 반환하고 생성된 키는 돌려주지 않는다.)
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> list = new ArrayList<>(items);
+        list.forEach(item -> item.setId(idAllocator.nextId()));
+        jdbcInsert.executeBatch(SqlParameterSourceUtils.createBatch(list));
+        nameGrams.insertAll(list);
+        return list;
+    }
+
     /**
      * <h2>데이터 업데이트</h2>
      */
@@ -72,7 +107,11 @@ public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
                 .addValue("quantity", updateParam.getQuantity())
                 .addValue("id", itemId);
 
-        template.update(sql, param);
+        int updated = template.update(sql, param);
+        if (updated == 0) { //없는 id 면 색인에 n-gram 을 남기지 않는다.
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+        }
+        nameGrams.replace(itemId, updateParam.getItemName());
     }
 
     /**
@@ -80,7 +119,7 @@ public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
      */
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id = :id";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id = :id";
         try {
             Map<String, Object> param = Map.of("id", id);
             Item item = template.queryForObject(sql, param, itemRowMapper());
@@ -95,19 +134,56 @@ public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
      */
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
+        SqlParameterSource param = ParsedSearchSql.param(cond);
+        ParsedSearchSql search = searchSqls.get(cond);
+        List<Item> items = template.getJdbcTemplate().query(search.sql(), itemRowMapper(), search.args(param));
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
+
+    /**
+     * <h2>데이터 스트림으로 조회</h2>
+     * {@code template.queryForStream()} 은 ResultSet 을 열어둔 채로 한 행씩 변환하는 Stream 을 반환한다.
+     * Stream 을 닫아야 커넥션이 반납되므로 반드시 try-with-resources 로 사용한다.
+     */
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        SqlParameterSource param = ParsedSearchSql.param(cond);
+        ParsedSearchSql search = searchSqls.get(cond);
+        return template.getJdbcTemplate().queryForStream(search.sql(), itemRowMapper(), search.args(param));
+    }
+
+    @Override
+    public QueryShapeRegistry<?> queryShapes() {
+        return searchSqls;
+    }
+
+    /**
+     * 검색 조건의 모양으로 동적 쿼리를 만든다. 모양마다 한 번만 호출되고 결과는 파싱해서 searchSqls 에 저장한다.
+     */
+    private static String searchSql(ItemSearchCond cond) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
 
-        SqlParameterSource param = new BeanPropertySqlParameterSource(cond);
-
-        String sql = "select id, item_name, price, quantity from item";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item";
         //동적 쿼리
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (StringUtils.hasText(itemName) || maxPrice != null || afterId != null || beforeId != null) {
             sql += " where";
         }
 
         boolean andFlag = false;
         if (StringUtils.hasText(itemName)) {
+            if (ItemNameGrams.indexable(itemName)) { //n-gram 색인으로 후보를 고른 뒤 like 로 확인한다. (JdbcTemplateItemRepositoryV1 참고)
+                sql += " id in (select item_id from item_name_gram where gram = any(:itemNameGrams)" +
+                        " group by item_id having count(*) = :itemNameGramCount) and";
+            }
             sql += " item_name like concat('%',:itemName,'%')";
             andFlag = true;
         }
@@ -117,16 +193,37 @@ public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
                 sql += " and";
             }
             sql += " price <= :maxPrice";
+            andFlag = true;
+        }
+
+        if (afterId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > :afterId";
+            andFlag = true;
         }
 
-        log.info("sql={}", sql);
-        return template.query(sql, param, itemRowMapper());
+        if (beforeId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id < :beforeId";
+        }
+
+        //키셋 페이징 : OFFSET 으로 앞의 행을 건너뛰지 않고 PK 인덱스에서 afterId, beforeId 위치를 바로 찾는다.
+        if (cond.getSize() != null) {
+            sql += cond.backward() ? " order by id desc" : " order by id";
+            sql += " limit :size";
+        }
+        return sql;
     }
 
     /**
      * <h2>DB 조회 결과를 객체로 변환</h2>
+     * BeanPropertyRowMapper 대신 컴파일 시점에 생성된 ItemRowMapper 를 사용한다. (JdbcTemplateItemRepositoryV2 참고)
      */
     private RowMapper<Item> itemRowMapper() {
-        return BeanPropertyRowMapper.newInstance(Item.class);
+        return ItemRowMapper.INSTANCE;
     }
 }
\ No newline at end of file
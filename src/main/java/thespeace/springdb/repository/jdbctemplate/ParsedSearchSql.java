@@ -0,0 +1,54 @@
+package thespeace.springdb.repository.jdbctemplate;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+
+import java.util.List;
+
+/**
+ * <h2>미리 파싱해 둔 이름 지정 파라미터 SQL</h2>
+ * NamedParameterJdbcTemplate 은 호출할 때마다 SQL 문자열로 캐시(LRU)를 찾아서 {@code :파라미터이름} 을 {@code ?} 로 바꾼다.
+ * 검색 SQL 은 모양마다 한 번만 파싱해서 JDBC SQL({@code ?})까지 만들어 두고, 호출마다 파라미터 값 배열만 만든다.
+ * (IN 절처럼 컬렉션을 펼치는 파라미터가 없어서 JDBC SQL 이 값에 따라 달라지지 않는다.)
+ *
+ * @param parsedSql 파라미터 이름과 위치
+ * @param sql       JdbcTemplate 에 그대로 넘기는 {@code ?} SQL
+ */
+record ParsedSearchSql(ParsedSql parsedSql, String sql) {
+
+    static ParsedSearchSql parse(String namedSql) {
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(namedSql);
+        return new ParsedSearchSql(parsedSql, NamedParameterUtils.substituteNamedParameters(parsedSql, null));
+    }
+
+    /**
+     * 검색 SQL 의 파라미터. 검색 조건 외에 상품명 색인(item_name_gram) 서브쿼리에 바인딩할 n-gram 배열과 개수를 함께 넣는다.
+     */
+    static SqlParameterSource param(ItemSearchCond cond) {
+        List<String> grams = ItemNameGrams.grams(cond.getItemName());
+        return new MapSqlParameterSource()
+                .addValue("itemName", cond.getItemName())
+                .addValue("maxPrice", cond.getMaxPrice())
+                .addValue("afterId", cond.getAfterId())
+                .addValue("beforeId", cond.getBeforeId())
+                .addValue("size", cond.getSize())
+                .addValue("itemNameGrams", grams.toArray(String[]::new))
+                .addValue("itemNameGramCount", grams.size());
+    }
+
+    /**
+     * sql 의 {@code ?} 순서대로 바인딩할 값. SqlParameterSource 가 타입을 알려주면 SqlParameterValue 로 감싼다.
+     */
+    Object[] args(SqlParameterSource param) {
+        return NamedParameterUtils.buildValueArray(parsedSql, param, null);
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
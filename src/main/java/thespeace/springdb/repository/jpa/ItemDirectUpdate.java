@@ -0,0 +1,88 @@
+package thespeace.springdb.repository.jpa;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGramJpaWriter;
+
+/**
+ * <h2>엔티티를 조회하지 않는 수정 - 수정한 상품만 2차 캐시에서 지운다</h2>
+ * JPQL(Querydsl) UPDATE 는 하이버네이트가 어떤 행을 바꿨는지 모르므로, 실행하면 Item 2차 캐시 영역 전체를 비우고 커밋할 때까지
+ * 잠근다. 상품 하나를 수정할 때마다 캐시해 둔 모든 상품을 다시 조회하게 되므로 수정이 잦으면 2차 캐시가 효과가 없다.
+ * <ul>
+ *     <li>그래서 UPDATE 를 네이티브 SQL 로 실행하고 HINT_NATIVE_SPACES 로 {@value #UNCACHED_SPACE} 를 지정한다. 하이버네이트는
+ *         지정한 공간(테이블)만 바뀐다고 보고, 이 공간을 쓰는 엔티티가 없으므로 어떤 영역도 비우지 않는다.
+ *         (지정하지 않으면 모든 영역을 비운다)</li>
+ *     <li>대신 {@link #afterUpdate} 에서 수정한 상품만 Cache.evict 로 지운다. 커밋 전에 다른 트랜잭션이 이전 값을 읽어서 다시 넣을
+ *         수 있으므로 트랜잭션이 끝난 뒤에 한 번 더 지운다.</li>
+ *     <li>검색 결과 캐시(id 목록)는 상품명, 가격이 바뀌면 결과가 달라지므로 쿼리 캐시 영역은 비운다. item 테이블이 바뀌면
+ *         어차피 버려지는 결과라서 잃는 것이 없다.</li>
+ *     <li>영속성 컨텍스트를 거치지 않으므로 실행 전에 flush() 하고, 실행 후에는 이미 읽어 둔 같은 상품을 분리(detach)한다.
+ *         엔티티 리스너도 호출되지 않으므로 상품명 n-gram 은 ItemNameGramJpaWriter 로 다시 저장한다.</li>
+ * </ul>
+ * JpaItemRepository, JpaItemRepositoryV3, ItemQueryRepositoryV2 가 사용한다. JpaItemRepositoryV2 는 같은 SQL 을
+ * 스프링 데이터 JPA 의 {@code @Modifying} 쿼리로 실행하고 {@link #afterUpdate} 만 사용한다.
+ */
+public class ItemDirectUpdate {
+
+    /**
+     * 어떤 엔티티도 매핑하지 않은 쿼리 공간. 네이티브 UPDATE 가 2차 캐시 영역을 비우지 않게 한다.
+     */
+    public static final String UNCACHED_SPACE = "item_direct_update";
+
+    private final EntityManager em;
+    private final ItemNameGramJpaWriter nameGrams;
+
+    public ItemDirectUpdate(EntityManager em) {
+        this.em = em;
+        this.nameGrams = new ItemNameGramJpaWriter(em);
+    }
+
+    /**
+     * 영향받은 행 수를 반환한다. 0 이면 없는 id 이다.
+     */
+    public int execute(Long itemId, ItemUpdateDto updateParam) {
+        em.flush();
+        int updated = em.createNativeQuery("update item" +
+                        " set item_name = :itemName, price = :price, quantity = :quantity" +
+                        " where id = :id")
+                .setHint(HibernateHints.HINT_NATIVE_SPACES, UNCACHED_SPACE)
+                .setParameter("itemName", updateParam.getItemName())
+                .setParameter("price", updateParam.getPrice())
+                .setParameter("quantity", updateParam.getQuantity())
+                .setParameter("id", itemId)
+                .executeUpdate();
+        if (updated > 0) {
+            afterUpdate(itemId, updateParam.getItemName());
+        }
+        return updated;
+    }
+
+    /**
+     * UPDATE 가 한 행을 바꾼 뒤에 호출한다. 영속성 컨텍스트, 2차 캐시, 상품명 n-gram 을 맞춘다.
+     */
+    public void afterUpdate(Long itemId, String itemName) {
+        em.detach(em.getReference(Item.class, itemId));
+        evict(itemId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(itemId);
+                }
+            });
+        }
+        nameGrams.replace(itemId, itemName);
+    }
+
+    private void evict(Long itemId) {
+        Cache cache = em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        cache.evict(Item.class, itemId);
+        cache.evictQueryRegions();
+    }
+}
@@ -3,16 +3,28 @@ package thespeace.springdb.repository.jpa;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import thespeace.springdb.domain.Item;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGramJpaWriter;
+import thespeace.springdb.repository.gram.ItemNameGramListener;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+import thespeace.springdb.repository.shape.QueryShapeAware;
+import thespeace.springdb.repository.shape.QueryShapeRegistry;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * <h1>JPA 사용</h1>
@@ -30,12 +42,21 @@ import java.util.Optional;
 @Slf4j
 @Repository
 @Transactional
-public class JpaItemRepository implements ItemRepository {
+public class JpaItemRepository implements ItemRepository, QueryShapeAware {
+
+    private static final int BATCH_SIZE = 50; //hibernate.jdbc.batch_size 와 맞춘다.
+    private static final int FETCH_SIZE = 500;
 
     private final EntityManager em;
+    private final QueryShapeRegistry<String> searchJpqls;
+    private final ItemNameGramJpaWriter nameGrams;
+    private final ItemDirectUpdate directUpdate;
 
     public JpaItemRepository(EntityManager em) {
         this.em = em;
+        this.nameGrams = new ItemNameGramJpaWriter(em);
+        this.directUpdate = new ItemDirectUpdate(em);
+        this.searchJpqls = new QueryShapeRegistry<>(getClass().getSimpleName(), JpaItemRepository::searchJpql);
     }
 
     /**
@@ -49,22 +70,61 @@ public class JpaItemRepository implements ItemRepository {
         return item;
     }
 
+    /**
+     * <h2>일괄 저장</h2>
+     * persist 한 엔티티는 플러시할 때 INSERT SQL이 실행된다. hibernate.jdbc.batch_size 를 설정하면 Hibernate 가 이 INSERT 들을
+     * JDBC 배치로 묶어서 보낸다.
+     * <ul>
+     *     <li>{@value #BATCH_SIZE}개마다 flush() 로 배치를 보내고 clear() 로 영속성 컨텍스트를 비워서, 저장할 상품이 많아도
+     *         1차 캐시가 계속 커지지 않게 한다. 이미 조회해 둔 엔티티도 준영속 상태가 된다.</li>
+     *     <li>Item 은 시퀀스 전략이라 persist 시점에 id 가 정해지고 INSERT 는 flush 까지 미뤄진다.
+     *         (IDENTITY 전략이면 INSERT 를 실행해야 id 를 알 수 있어서 Hibernate 가 INSERT 배치를 사용하지 않는다.)</li>
+     *     <li>엔티티 리스너는 상품마다 n-gram 배치를 하나씩 보내므로 여기서는 미뤄 두고(deferInserts), 모든 상품을 플러시한 뒤
+     *         ItemNameGramJpaWriter.insertAll 로 한 번의 배치로 저장한다.</li>
+     * </ul>
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> list = new ArrayList<>(items);
+        em.flush(); //앞서 persist 한 상품은 리스너가 n-gram 을 저장하도록 미루지 않는 상태에서 먼저 플러시한다.
+        ItemNameGramListener.deferInserts(() -> {
+            for (int i = 0; i < list.size(); i++) {
+                em.persist(list.get(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            return list;
+        });
+        nameGrams.insertAll(list);
+        return list;
+    }
+
     /**
      * <h2>수정</h2>
      * <ul>
      *     <li>JPA는 트랜잭션이 커밋되는 시점에, 변경된 엔티티 객체가 있는지 확인한다. 특정 엔티티 객체가 변경된 경우에는
      *         UPDATE SQL을 실행한다.(JPA가 어떻게 변경된 엔티티 객체를 찾는지 명확하게 이해하려면 영속성 컨텍스트라는
      *         JPA 내부 원리를 이해해야 한다)</li>
-     *     <li>테스트의 경우 마지막에 트랜잭션이 롤백되기 때문에 JPA는 UPDATE SQL을 실행하지 않는다. 테스트에서
-     *         UPDATE SQL을 확인하려면 @Commit 을 붙이면 확인할 수 있다.</li>
+     *     <li>하지만 이 방법은 수정할 때마다 엔티티를 조회(SELECT)하고, 플러시할 때 스냅샷과 비교한 뒤 UPDATE 를 실행한다.
+     *         수정 화면은 바꿀 값(ItemUpdateDto)을 모두 가지고 있으므로 조회할 필요가 없다.</li>
+     * </ul>
+     *
+     * <h2>UPDATE 로 직접 수정</h2>
+     * <ul>
+     *     <li>UPDATE SQL 을 바로 실행하고 영향받은 행 수를 받는다. 0 이면 없는 id 이므로 미리 조회하지 않아도
+     *         EmptyResultDataAccessException 으로 알 수 있다.</li>
+     *     <li>JPQL UPDATE 는 커밋할 때 Item 2차 캐시 영역 전체를 비우므로, 수정한 상품만 캐시에서 지우는 네이티브 UPDATE 를
+     *         사용한다. 영속성 컨텍스트, 상품명 n-gram, 2차 캐시 처리는 ItemDirectUpdate 를 참고한다.</li>
      * </ul>
      */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = em.find(Item.class, itemId);
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        if (directUpdate.execute(itemId, updateParam) == 0) {
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+        }
     }
 
     /**
@@ -103,17 +163,67 @@ public class JpaItemRepository implements ItemRepository {
      */
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> items = new ArrayList<>(searchQuery(cond).getResultList());
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
+
+    /**
+     * <h2>검색 결과를 스트림으로 조회</h2>
+     * <ul>
+     *     <li>{@code getResultStream()} : 하이버네이트는 ScrollableResults(전진 전용 커서)로 구현해서, fetch size 만큼씩
+     *         ResultSet 을 읽는다. getResultList() 처럼 전체 결과를 한 번에 메모리에 올리지 않는다.</li>
+     *     <li>읽은 엔티티가 영속성 컨텍스트에 계속 쌓이면 메모리가 결과 크기만큼 늘어나므로 한 건씩 detach 한다.</li>
+     *     <li>커서는 트랜잭션(커넥션)에 묶여 있으므로 호출하는 쪽의 트랜잭션을 필수(MANDATORY)로 요구한다.
+     *         이 메서드의 트랜잭션이 끝나는 순간 스트림도 읽을 수 없게 되기 때문이다.</li>
+     * </ul>
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        return searchQuery(cond)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .peek(em::detach);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS) //메트릭 등록 시 호출된다. 트랜잭션(커넥션)이 필요 없다.
+    public QueryShapeRegistry<?> queryShapes() {
+        return searchJpqls;
+    }
+
+    /**
+     * <h2>검색 조건의 모양으로 JPQL 생성</h2>
+     * JPQL 은 조건의 값이 아니라 어떤 조건이 들어있는지에만 의존하므로 모양마다 한 번만 만들어서 searchJpqls 에 저장한다.
+     * 하이버네이트는 JPQL 을 해석한 결과(SQM, SQL)를 JPQL 문자열을 키로 캐시(query plan cache)하므로, 호출마다 문자열을
+     * 다시 조립하지 않고 저장해 둔 문자열(해시값도 계산되어 있다)로 바로 캐시를 찾는다.<br>
+     * 상품명이 3글자 이상이면 ItemNameGram 서브쿼리로 후보를 고르고 like 는 후보만 확인한다.(ItemNameGrams 참고)
+     */
+    private static String searchJpql(ItemSearchCond cond) {
         String jpql = "select i from Item i";
 
         Integer maxPrice = cond.getMaxPrice();
         String itemName = cond.getItemName();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
 
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (StringUtils.hasText(itemName) || maxPrice != null || afterId != null || beforeId != null) {
             jpql += " where";
         }
 
         boolean andFlag = false;
         if (StringUtils.hasText(itemName)) {
+            if (ItemNameGrams.indexable(itemName)) {
+                jpql += " i.id in (select g.itemId from ItemNameGram g where g.gram in :itemNameGrams" +
+                        " group by g.itemId having count(g) = :itemNameGramCount) and";
+            }
             jpql += " i.itemName like concat('%',:itemName,'%')";
             andFlag = true;
         }
@@ -123,17 +233,58 @@ public class JpaItemRepository implements ItemRepository {
                 jpql += " and";
             }
             jpql += " i.price <= :maxPrice";
+            andFlag = true;
         }
 
-        log.info("jpql={}", jpql);
+        if (afterId != null) {
+            if (andFlag) {
+                jpql += " and";
+            }
+            jpql += " i.id > :afterId";
+            andFlag = true;
+        }
 
-        TypedQuery<Item> query = em.createQuery(jpql, Item.class);
+        if (beforeId != null) {
+            if (andFlag) {
+                jpql += " and";
+            }
+            jpql += " i.id < :beforeId";
+        }
+
+        //키셋 페이징 : OFFSET(setFirstResult) 대신 id 조건으로 시작 위치를 찾고 size 개만 가져온다.
+        if (cond.getSize() != null) {
+            jpql += cond.backward() ? " order by i.id desc" : " order by i.id";
+        }
+        return jpql;
+    }
+
+    private TypedQuery<Item> searchQuery(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
+
+        TypedQuery<Item> query = em.createQuery(searchJpqls.get(cond), Item.class);
         if (StringUtils.hasText(itemName)) {
+            if (ItemNameGrams.indexable(itemName)) {
+                List<String> grams = ItemNameGrams.grams(itemName);
+                query.setParameter("itemNameGrams", grams);
+                query.setParameter("itemNameGramCount", (long) grams.size()); //count() 는 Long 이다.
+            }
             query.setParameter("itemName", itemName);
         }
         if (maxPrice != null) {
             query.setParameter("maxPrice", maxPrice);
         }
-        return query.getResultList();
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+        }
+        if (beforeId != null) {
+            query.setParameter("beforeId", beforeId);
+        }
+        if (cond.getSize() != null) {
+            query.setMaxResults(cond.getSize());
+        }
+        return query;
     }
 }
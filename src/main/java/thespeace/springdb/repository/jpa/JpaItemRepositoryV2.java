@@ -1,17 +1,32 @@
 package thespeace.springdb.repository.jpa;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.query.FluentQuery;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.domain.ItemNameGram;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGrams;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * <h1>스프링 데이터 JPA 적용</h1>
@@ -19,22 +34,44 @@ import java.util.Optional;
  */
 @Repository
 @Transactional
-@RequiredArgsConstructor
 public class JpaItemRepositoryV2 implements ItemRepository {
 
     private final SpringDataJpaItemRepository repository;
+    private final EntityManager em;
+    private final ItemDirectUpdate directUpdate;
+
+    public JpaItemRepositoryV2(SpringDataJpaItemRepository repository, EntityManager em) {
+        this.repository = repository;
+        this.em = em;
+        this.directUpdate = new ItemDirectUpdate(em);
+    }
 
     @Override
     public Item save(Item item) {
         return repository.save(item);
     }
 
+    /**
+     * 스프링 데이터 JPA 의 saveAll() 은 save() 를 반복 호출한다. 새 엔티티는 persist 되고, INSERT 는 커밋 직전 플러시할 때
+     * hibernate.jdbc.batch_size 단위로 묶어서 실행된다.
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        return repository.saveAll(items);
+    }
+
+    /**
+     * 엔티티를 조회하지 않고 {@code @Modifying} 쿼리로 수정한다. 영향받은 행 수가 0 이면 없는 id 이다.
+     * 영속성 컨텍스트, 상품명 n-gram, 2차 캐시 처리는 ItemDirectUpdate.afterUpdate 에 맡긴다.
+     */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = repository.findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        int updated = repository.updateItem(itemId,
+                updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        if (updated == 0) {
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+        }
+        directUpdate.afterUpdate(itemId, updateParam.getItemName());
     }
 
     @Override
@@ -47,7 +84,13 @@ public class JpaItemRepositoryV2 implements ItemRepository {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
 
-        if(StringUtils.hasText(itemName) && maxPrice != null) {
+        if(bySpecification(cond)) {
+            List<Item> items = new ArrayList<>(findBySpecification(cond, FluentQuery.FetchableFluentQuery::all));
+            if (cond.backward()) {
+                Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+            }
+            return items;
+        } else if(StringUtils.hasText(itemName) && maxPrice != null) {
 //            return repository.findByItemNameLikeAndPriceLessThanEqual("%" + itemName + "%", maxPrice);
 
             return repository.findItems("%" + itemName + "%", maxPrice);
@@ -59,4 +102,89 @@ public class JpaItemRepositoryV2 implements ItemRepository {
             return repository.findAll();
         }
     }
+
+    /**
+     * findAll 과 같은 4가지 분기를 Stream 을 반환하는 쿼리 메서드로 실행한다.
+     * 읽은 엔티티는 영속성 컨텍스트에 쌓이지 않도록 한 건씩 detach 하고, 커서가 트랜잭션에 묶여 있으므로
+     * 호출하는 쪽의 트랜잭션을 필수로 요구한다.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        if(cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+
+        Stream<Item> items;
+        if(bySpecification(cond)) {
+            items = findBySpecification(cond, FluentQuery.FetchableFluentQuery::stream);
+        } else if(StringUtils.hasText(itemName) && maxPrice != null) {
+            items = repository.streamItems("%" + itemName + "%", maxPrice);
+        } else if(StringUtils.hasText(itemName)) {
+            items = repository.streamByItemNameLike("%" + itemName + "%");
+        } else if(maxPrice != null) {
+            items = repository.streamByPriceLessThanEqual(maxPrice);
+        } else {
+            items = repository.streamAll();
+        }
+        return items.peek(em::detach);
+    }
+
+    /**
+     * 쿼리 메서드로 표현할 수 없는 검색인지. 키셋 페이징과 n-gram 색인을 사용하는 상품명 검색이 해당한다.
+     */
+    private static boolean bySpecification(ItemSearchCond cond) {
+        return cond.getAfterId() != null || cond.getBeforeId() != null || cond.getSize() != null
+                || ItemNameGrams.indexable(cond.getItemName());
+    }
+
+    /**
+     * <h2>키셋 페이징, 상품명 색인</h2>
+     * 쿼리 메서드로 조건 조합(이름, 가격, afterId, beforeId)을 모두 만들면 메서드가 너무 많아지므로, 이 경우에는
+     * Specification 으로 where 조건을 조립하고 fluent API 로 정렬과 limit 을 지정한다.
+     * offset 을 사용하지 않으므로 뒤쪽 페이지도 첫 페이지와 비용이 같다.<br>
+     * 상품명이 3글자 이상이면 ItemNameGram 서브쿼리로 후보를 고르고 like 는 후보만 확인한다.(ItemNameGrams 참고)
+     */
+    private <R> R findBySpecification(ItemSearchCond cond, Function<FluentQuery.FetchableFluentQuery<Item>, R> fetch) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
+
+        Specification<Item> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if(StringUtils.hasText(itemName)) {
+                List<String> grams = ItemNameGrams.grams(itemName);
+                if(!grams.isEmpty()) {
+                    Subquery<Long> candidates = query.subquery(Long.class);
+                    Root<ItemNameGram> gram = candidates.from(ItemNameGram.class);
+                    candidates.select(gram.get("itemId"))
+                            .where(gram.get("gram").in(grams))
+                            .groupBy(gram.get("itemId"))
+                            .having(cb.equal(cb.count(gram), (long) grams.size()));
+                    predicates.add(root.get("id").in(candidates));
+                }
+                predicates.add(cb.like(root.get("itemName"), "%" + itemName + "%"));
+            }
+            if(maxPrice != null) {
+                predicates.add(cb.le(root.get("price"), maxPrice));
+            }
+            if(afterId != null) {
+                predicates.add(cb.gt(root.get("id"), afterId));
+            }
+            if(beforeId != null) {
+                predicates.add(cb.lt(root.get("id"), beforeId));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+
+        Sort sort = Sort.by(cond.backward() ? Sort.Direction.DESC : Sort.Direction.ASC, "id");
+        return repository.findBy(spec, query -> {
+            FluentQuery.FetchableFluentQuery<Item> sorted = query.sortBy(sort);
+            return fetch.apply(cond.getSize() == null ? sorted : sorted.limit(cond.getSize()));
+        });
+    }
 }
@@ -2,22 +2,38 @@ package thespeace.springdb.repository.jpa;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import thespeace.springdb.domain.Item;
 import thespeace.springdb.domain.QItem;
 import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.ItemListDto;
 import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.gram.ItemNameGramJpaWriter;
+import thespeace.springdb.repository.gram.ItemNameGramListener;
+import thespeace.springdb.repository.gram.ItemNameGrams;
 import thespeace.springdb.repository.ItemUpdateDto;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static thespeace.springdb.domain.QItem.*;
+import static thespeace.springdb.domain.QItemNameGram.itemNameGram;
 
 /**
  * <h1>Querydsl 적용</h1>
@@ -38,12 +54,19 @@ import static thespeace.springdb.domain.QItem.*;
 @Transactional
 public class JpaItemRepositoryV3 implements ItemRepository {
 
+    private static final int BATCH_SIZE = 50; //hibernate.jdbc.batch_size 와 맞춘다.
+    private static final int FETCH_SIZE = 500;
+
     private final EntityManager em;
     private final JPAQueryFactory query;
+    private final ItemNameGramJpaWriter nameGrams;
+    private final ItemDirectUpdate directUpdate;
 
     public JpaItemRepositoryV3(EntityManager em) {
         this.em = em;
         this.query = new JPAQueryFactory(em);
+        this.nameGrams = new ItemNameGramJpaWriter(em);
+        this.directUpdate = new ItemDirectUpdate(em);
     }
 
     @Override
@@ -52,12 +75,49 @@ public class JpaItemRepositoryV3 implements ItemRepository {
         return item;
     }
 
+    /**
+     * <h2>일괄 저장</h2>
+     * persist 한 엔티티는 플러시할 때 INSERT SQL이 실행된다. hibernate.jdbc.batch_size 를 설정하면 Hibernate 가 이 INSERT 들을
+     * JDBC 배치로 묶어서 보낸다.
+     * <ul>
+     *     <li>{@value #BATCH_SIZE}개마다 flush() 로 배치를 보내고 clear() 로 영속성 컨텍스트를 비워서, 저장할 상품이 많아도
+     *         1차 캐시가 계속 커지지 않게 한다. 이미 조회해 둔 엔티티도 준영속 상태가 된다.</li>
+     *     <li>Item 은 시퀀스 전략이라 persist 시점에 id 가 정해지고 INSERT 는 flush 까지 미뤄진다.
+     *         (IDENTITY 전략이면 INSERT 를 실행해야 id 를 알 수 있어서 Hibernate 가 INSERT 배치를 사용하지 않는다.)</li>
+     *     <li>엔티티 리스너는 상품마다 n-gram 배치를 하나씩 보내므로 여기서는 미뤄 두고(deferInserts), 모든 상품을 플러시한 뒤
+     *         ItemNameGramJpaWriter.insertAll 로 한 번의 배치로 저장한다.</li>
+     * </ul>
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> list = new ArrayList<>(items);
+        em.flush(); //앞서 persist 한 상품은 리스너가 n-gram 을 저장하도록 미루지 않는 상태에서 먼저 플러시한다.
+        ItemNameGramListener.deferInserts(() -> {
+            for (int i = 0; i < list.size(); i++) {
+                em.persist(list.get(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            return list;
+        });
+        nameGrams.insertAll(list);
+        return list;
+    }
+
+    /**
+     * <h2>수정</h2>
+     * 엔티티를 조회하지 않고 UPDATE 를 바로 실행한다. 영향받은 행 수가 0 이면 없는 id 이다.<br>
+     * Querydsl update 는 JPQL UPDATE 라서 커밋할 때 Item 2차 캐시 영역 전체를 비운다. 그래서 JpaItemRepository 와 같이
+     * 수정한 상품만 캐시에서 지우는 ItemDirectUpdate 를 사용한다.
+     */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = em.find(Item.class, itemId);
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        if (directUpdate.execute(itemId, updateParam) == 0) {
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+        }
     }
 
     @Override
@@ -110,20 +170,98 @@ public class JpaItemRepositoryV3 implements ItemRepository {
      */
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> items = new ArrayList<>(searchQuery(cond).fetch());
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
 
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
+    /**
+     * <h3>목록 화면용 조회</h3>
+     * <ul>
+     *     <li>{@code Projections.constructor} 로 필요한 컬럼만 읽어서 {@link ItemListDto} 를 바로 만든다. 엔티티가 아니므로
+     *         영속성 컨텍스트에 들어가지 않고, 변경 감지용 스냅샷도, 플러시할 것도 없다.</li>
+     *     <li>HINT_READ_ONLY, HINT_FLUSH_MODE(MANUAL) 는 이 쿼리 전에 자동 플러시(변경 감지)를 하지 않게 한다.
+     *         읽기 전용 트랜잭션(readOnly = true)에서 호출하면 스프링도 세션을 같은 상태로 둔다.</li>
+     *     <li>그래서 쓰기 트랜잭션 안에서 호출하면 아직 플러시하지 않은 변경은 결과에 보이지 않는다. 필요하면 먼저 flush 한다.</li>
+     * </ul>
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemListDto> findList(ItemSearchCond cond) {
+        List<ItemListDto> items = new ArrayList<>(search(query
+                .select(Projections.constructor(ItemListDto.class,
+                        item.id, item.itemName, item.price, item.quantity))
+                .from(item), cond)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_FLUSH_MODE, FlushMode.MANUAL)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .fetch());
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
 
-        return query
-                .select(item)
-                .from(item)
-                .where(likeItemName(itemName), maxPrice(maxPrice))
-                .fetch();
+    /**
+     * <h3>검색 결과를 스트림으로 조회</h3>
+     * fetch() 대신 stream() 을 사용하면 Querydsl 이 getResultStream() 을 호출하고, 하이버네이트는 이를 전진 전용
+     * 커서(ScrollableResults)로 실행한다. 읽은 엔티티는 한 건씩 detach 해서 영속성 컨텍스트가 커지지 않게 한다.
+     * 커서가 트랜잭션에 묶여 있으므로 호출하는 쪽의 트랜잭션을 필수로 요구한다.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        return searchQuery(cond)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .stream()
+                .peek(em::detach);
     }
 
+    /**
+     * 키셋 페이징 : offset() 대신 afterId(), beforeId() 조건으로 PK 인덱스에서 시작 위치를 찾고 size 개만 가져온다.
+     * 이전 페이지는 id 내림차순으로 가져오므로 호출하는 쪽에서 뒤집는다.
+     */
+    private JPAQuery<Item> searchQuery(ItemSearchCond cond) {
+        return search(query.selectFrom(item), cond);
+    }
+
+    private <T> JPAQuery<T> search(JPAQuery<T> search, ItemSearchCond cond) {
+        search.where(
+                likeItemName(cond.getItemName()),
+                maxPrice(cond.getMaxPrice()),
+                afterId(cond.getAfterId()),
+                beforeId(cond.getBeforeId())
+        );
+        if (cond.getSize() != null) {
+            search.orderBy(cond.backward() ? item.id.desc() : item.id.asc())
+                    .limit(cond.getSize());
+        }
+        return search;
+    }
+
+    /**
+     * 상품명이 3글자 이상이면 n-gram 을 모두 가진 상품만 서브쿼리로 고르고, like 는 그 후보만 확인한다.(ItemNameGrams 참고)
+     */
     private BooleanExpression likeItemName(String itemName) {
         if(StringUtils.hasText(itemName)) {
-            return item.itemName.like("%" + itemName + "%");
+            BooleanExpression like = item.itemName.like("%" + itemName + "%");
+            if (!ItemNameGrams.indexable(itemName)) {
+                return like;
+            }
+            List<String> grams = ItemNameGrams.grams(itemName);
+            return item.id.in(JPAExpressions
+                    .select(itemNameGram.itemId)
+                    .from(itemNameGram)
+                    .where(itemNameGram.gram.in(grams))
+                    .groupBy(itemNameGram.itemId)
+                    .having(itemNameGram.itemId.count().eq((long) grams.size())))
+                    .and(like);
         }
         return null;
     }
@@ -134,4 +272,18 @@ public class JpaItemRepositoryV3 implements ItemRepository {
         }
         return null;
     }
+
+    private BooleanExpression afterId(Long afterId) {
+        if(afterId != null) {
+            return item.id.gt(afterId);
+        }
+        return null;
+    }
+
+    private BooleanExpression beforeId(Long beforeId) {
+        if(beforeId != null) {
+            return item.id.lt(beforeId);
+        }
+        return null;
+    }
 }
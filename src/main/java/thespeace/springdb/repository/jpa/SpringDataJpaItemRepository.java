@@ -1,11 +1,17 @@
 package thespeace.springdb.repository.jpa;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import thespeace.springdb.domain.Item;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * <h1>스프링 데이터 JPA 적용</h1>
@@ -26,10 +32,12 @@ import java.util.List;
  * 동적 쿼리를 사용하면 좋겠지만, 스프링 데이터 JPA는 동적 쿼리에 약하다. 이번에는 직접 4가지 상황을
  * 스프링 데이터 JPA로 구현해보자(이 문제는 이후에 Querydsl에서 동적 쿼리로 깔끔하게 해결.)
  *
+ * 키셋 페이징처럼 조건 조합이 더 많아지는 검색은 JpaSpecificationExecutor 의 Specification 으로 처리한다.
+ *
  * @reference : 스프링 데이터 JPA도 Example 이라는 기능으로 약간의 동적 쿼리를 지원하지만, 실무에서 사용하기는 기능이
  * 빈약하다. 실무에서 JPQL 동적 쿼리는 Querydsl을 사용하는 것이 좋다.
  */
-public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long> {
+public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long>, JpaSpecificationExecutor<Item> {
 
     /**
      * <h2>이름 조건만 검색했을 때 사용하는 쿼리 메서드</h2>
@@ -71,6 +79,45 @@ public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long> {
     @Query("select i from Item i where i.itemName like :itemName and i.price <= :price")
     List<Item> findItems(@Param("itemName") String itemName, @Param("price") Integer price);
 
+    /*
+     * 위 조회를 스트림으로 반환하는 버전. 쿼리 메서드의 반환 타입을 Stream 으로 선언하면 스프링 데이터 JPA가
+     * getResultStream()(하이버네이트의 ScrollableResults)으로 실행한다. 트랜잭션 안에서 사용하고 반드시 닫아야 한다.
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select i from Item i")
+    Stream<Item> streamAll();
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Item> streamByItemNameLike(String itemName);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Item> streamByPriceLessThanEqual(Integer price);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select i from Item i where i.itemName like :itemName and i.price <= :price")
+    Stream<Item> streamItems(@Param("itemName") String itemName, @Param("price") Integer price);
+
+    /**
+     * <h2>엔티티를 조회하지 않는 수정</h2>
+     * <ul>
+     *     <li>@Modifying : @Query 로 UPDATE, DELETE 를 실행할 때 붙인다. 영향받은 행 수를 반환한다.</li>
+     *     <li>flushAutomatically : 실행 전에 영속성 컨텍스트에 쌓인 변경을 먼저 플러시한다.</li>
+     *     <li>clearAutomatically 는 영속성 컨텍스트 전체를 비우므로 사용하지 않는다. 호출하는 쪽에서 수정한 상품만 분리한다.</li>
+     *     <li>JPQL UPDATE 는 커밋할 때 Item 2차 캐시 영역 전체를 비운다. 그래서 네이티브 쿼리로 실행하고 HINT_NATIVE_SPACES 로
+     *         캐시 영역을 비우지 않게 한 뒤, 호출하는 쪽에서 수정한 상품만 캐시에서 지운다.(ItemDirectUpdate 참고)</li>
+     * </ul>
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ItemDirectUpdate.UNCACHED_SPACE))
+    @Query(value = "update item set item_name = :itemName, price = :price, quantity = :quantity where id = :id",
+            nativeQuery = true)
+    int updateItem(@Param("id") Long id, @Param("itemName") String itemName,
+                   @Param("price") Integer price, @Param("quantity") Integer quantity);
+
     //findAll() : 코드에는 보이지 않지만 JpaRepository 공통 인터페이스가 제공하는 기능으로 모든 Item 을 조회한다.
     //            실행되는 JPQL : `select i from Item i`
 }
@@ -0,0 +1,316 @@
+package thespeace.springdb.repository.memory;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ObjectUtils;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemRepository;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * <h2>컬럼 단위로 저장하는 메모리 저장소</h2>
+ * MemoryItemRepository 는 상품마다 Item 객체(박싱된 Long, Integer 포함)를 힙에 만들기 때문에, 상품이 많아지면
+ * 메모리 대부분이 객체 헤더와 포인터가 되고 검색할 때도 포인터를 따라다니게 된다.<br>
+ * 여기서는 상품 하나를 행(row)으로 보고, 각 필드를 기본형 배열(컬럼)에 나눠서 저장한다.
+ * <ul>
+ *     <li>ids : {@code long[]}, prices, quantities : {@code int[]}</li>
+ *     <li>itemName : 딕셔너리 인코딩. 같은 이름은 한 번만 저장하고 각 행에는 {@code int} 코드만 저장한다.</li>
+ *     <li>검색은 기본형 배열을 도는 단순한 루프로 수행하고, 조건에 맞는 행만 Item 객체로 만든다.</li>
+ *     <li>상품명 검색은 행마다 contains 를 하지 않고, 딕셔너리의 이름마다 한 번씩만 검사한 결과를 사용한다.</li>
+ * </ul>
+ *
+ * <h2>제약</h2>
+ * <ul>
+ *     <li>id 는 1부터 순서대로 발급하므로 {@code row = id - 1} 로 바로 찾는다.</li>
+ *     <li>price, quantity 의 null 은 {@link Integer#MIN_VALUE} 로 표현한다. 따라서 이 값 자체는 저장할 수 없고, 저장하려고 하면 IllegalArgumentException 을 던진다.</li>
+ *     <li>이름을 수정해도 이전 이름은 딕셔너리에 남는다.</li>
+ *     <li>읽기는 읽기 락을 공유하고, 쓰기(배열 확장 포함)는 쓰기 락으로 직렬화한다.</li>
+ * </ul>
+ */
+@Repository
+public class ColumnarItemRepository implements ItemRepository {
+
+    private static final int NULL_VALUE = Integer.MIN_VALUE;
+    private static final int NULL_NAME = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] prices = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryCodes = new HashMap<>();
+
+    @Override
+    public Item save(Item item) {
+        checkStorable(item.getPrice(), item.getQuantity());
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + 1);
+            int row = size;
+            ids[row] = row + 1L;
+            prices[row] = encode(item.getPrice());
+            quantities[row] = encode(item.getQuantity());
+            nameCodes[row] = nameCode(item.getItemName());
+            size++;
+            item.setId(ids[row]);
+            return item;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 배열 확장과 쓰기 락을 한 번만 수행한다.
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        items.forEach(item -> checkStorable(item.getPrice(), item.getQuantity())); //일부만 저장되지 않도록 먼저 검사한다.
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + items.size());
+            for (Item item : items) {
+                int row = size;
+                ids[row] = row + 1L;
+                prices[row] = encode(item.getPrice());
+                quantities[row] = encode(item.getQuantity());
+                nameCodes[row] = nameCode(item.getItemName());
+                size++;
+                item.setId(ids[row]);
+            }
+            return new ArrayList<>(items);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        checkStorable(updateParam.getPrice(), updateParam.getQuantity());
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+            }
+            prices[row] = encode(updateParam.getPrice());
+            quantities[row] = encode(updateParam.getQuantity());
+            nameCodes[row] = nameCode(updateParam.getItemName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(toItem(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * afterId, beforeId 는 {@code row = id - 1} 로 바로 시작, 끝 행을 정하고, size 개를 채우면 멈춘다.
+     * 이전 페이지(beforeId)는 끝 행부터 거꾸로 읽은 뒤 뒤집는다.
+     */
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        int limit = cond.getSize() == null ? Integer.MAX_VALUE : cond.getSize();
+
+        lock.readLock().lock();
+        try {
+            boolean[] matchedNames = ObjectUtils.isEmpty(itemName) ? null : matchNames(itemName);
+            int from = fromRow(cond);
+            int to = toRow(cond, from);
+
+            List<Item> result = new ArrayList<>();
+            if (cond.backward()) {
+                for (int row = to - 1; row >= from && result.size() < limit; row--) {
+                    if (matches(row, itemName, matchedNames, maxPrice)) {
+                        result.add(toItem(row));
+                    }
+                }
+                Collections.reverse(result);
+                return result;
+            }
+            for (int row = from; row < to && result.size() < limit; row++) {
+                if (matches(row, itemName, matchedNames, maxPrice)) {
+                    result.add(toItem(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * <h2>스트림으로 조회</h2>
+     * 시작할 때의 행 범위까지만 한 행씩 읽는다. 읽기 락을 스트림이 살아 있는 동안 잡고 있으면 소비가 느릴 때 쓰기가
+     * 모두 멈추고, 닫는 스레드가 다르면 락을 풀 수도 없으므로 행마다 짧게 읽기 락을 잡는다.
+     * 따라서 도중에 커밋된 수정은 아직 읽지 않은 행에 반영될 수 있다.
+     */
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        int from;
+        int to;
+        boolean[] matchedNames;
+        lock.readLock().lock();
+        try {
+            from = fromRow(cond);
+            to = toRow(cond, from);
+            matchedNames = ObjectUtils.isEmpty(itemName) ? null : matchNames(itemName);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return IntStream.range(from, to)
+                .mapToObj(row -> {
+                    lock.readLock().lock();
+                    try {
+                        if (row >= size) { //도중에 clearStore() 된 경우
+                            return null;
+                        }
+                        return matches(row, itemName, matchedNames, maxPrice) ? toItem(row) : null;
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                })
+                .filter(Objects::nonNull)
+                .limit(cond.getSize() == null ? Long.MAX_VALUE : cond.getSize());
+    }
+
+    /**
+     * 읽기 락을 잡은 상태에서 호출한다. matchedNames 를 만든 뒤 수정으로 추가된 이름은 여기서 직접 검사한다.
+     */
+    private boolean matches(int row, String itemName, boolean[] matchedNames, Integer maxPrice) {
+        if (matchedNames != null) {
+            int code = nameCodes[row];
+            if (code == NULL_NAME) {
+                return false;
+            }
+            boolean matched = code < matchedNames.length
+                    ? matchedNames[code] : dictionary.get(code).contains(itemName);
+            if (!matched) {
+                return false;
+            }
+        }
+        if (maxPrice != null) {
+            int price = prices[row];
+            return price != NULL_VALUE && price <= maxPrice;
+        }
+        return true;
+    }
+
+    private int fromRow(ItemSearchCond cond) {
+        Long afterId = cond.getAfterId();
+        return afterId == null ? 0 : (int) Math.min(Math.max(afterId, 0), size);
+    }
+
+    private int toRow(ItemSearchCond cond, int from) {
+        Long beforeId = cond.getBeforeId();
+        return beforeId == null ? size : (int) Math.max(Math.min(beforeId - 1, size), from);
+    }
+
+    /**
+     * 저장된 데이터를 모두 삭제해서 초기화, 테스트 용도로만 사용한다.
+     */
+    public void clearStore() {
+        lock.writeLock().lock();
+        try {
+            ids = new long[INITIAL_CAPACITY];
+            prices = new int[INITIAL_CAPACITY];
+            quantities = new int[INITIAL_CAPACITY];
+            nameCodes = new int[INITIAL_CAPACITY];
+            size = 0;
+            dictionary.clear();
+            dictionaryCodes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean[] matchNames(String itemName) {
+        boolean[] matched = new boolean[dictionary.size()];
+        for (int code = 0; code < matched.length; code++) {
+            matched[code] = dictionary.get(code).contains(itemName);
+        }
+        return matched;
+    }
+
+    private Item toItem(int row) {
+        Item item = new Item();
+        item.setId(ids[row]);
+        int code = nameCodes[row];
+        item.setItemName(code == NULL_NAME ? null : dictionary.get(code));
+        item.setPrice(decode(prices[row]));
+        item.setQuantity(decode(quantities[row]));
+        return item;
+    }
+
+    private int rowOf(Long id) {
+        if (id == null || id < 1 || id > size) {
+            return -1;
+        }
+        return (int) (id - 1);
+    }
+
+    private int nameCode(String itemName) {
+        if (itemName == null) {
+            return NULL_NAME;
+        }
+        return dictionaryCodes.computeIfAbsent(itemName, name -> {
+            dictionary.add(name);
+            return dictionary.size() - 1;
+        });
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        nameCodes = Arrays.copyOf(nameCodes, newCapacity);
+    }
+
+    /**
+     * {@link Integer#MIN_VALUE} 는 null 표현과 겹쳐서 조회하면 null 이 되므로 저장하지 않고 거부한다.
+     */
+    private static void checkStorable(Integer price, Integer quantity) {
+        if (Objects.equals(price, NULL_VALUE) || Objects.equals(quantity, NULL_VALUE)) {
+            throw new IllegalArgumentException("price, quantity 에는 " + NULL_VALUE + " 를 저장할 수 없습니다.");
+        }
+    }
+
+    private static int encode(Integer value) {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private static Integer decode(int value) {
+        return value == NULL_VALUE ? null : value;
+    }
+}
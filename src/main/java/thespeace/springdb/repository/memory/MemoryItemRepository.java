@@ -4,39 +4,178 @@ import thespeace.springdb.domain.Item;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.id.IdAllocator;
+import thespeace.springdb.repository.id.LocalIdAllocator;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.ObjectUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * <h2>인터페이스를 구현한 메모리 저장소</h2>
+ *
+ * <h2>동시성</h2>
+ * 웹 요청은 여러 스레드에서 동시에 들어오기 때문에 HashMap 과 {@code ++sequence} 를 사용하면 업데이트 유실,
+ * id 중복, 리사이즈 도중 맵 손상 같은 문제가 발생한다. 그래서 다음과 같이 동시성 자료구조를 사용한다.
+ * <ul>
+ *     <li>ConcurrentSkipListMap : 락 없이(lock-free) 조회할 수 있고, 쓰기도 여러 코어에서 동시에 수행된다.
+ *         id 순서로 정렬되어 있으므로 저장한 순서대로 조회된다.</li>
+ *     <li>LocalIdAllocator(AtomicLong) : CAS 기반으로 중복 없는 id 를 발급한다.</li>
+ * </ul>
+ *
+ * <h2>다중 버전(MVCC)</h2>
+ * 저장된 Item 을 그대로 수정하면, 이미 조회해 간 객체(예: 렌더링 중인 화면)에서 수정이 반쯤 적용된 상태가 보인다.
+ * 그래서 상품마다 변경할 수 없는 버전의 목록(최신 → 과거)을 두고, 수정할 때는 기존 버전을 바꾸지 않고 새 버전을 추가한다.
+ * <ul>
+ *     <li>쓰기 : 같은 상품에 대한 쓰기만 id 로 나눈 락(stripe)으로 직렬화한다. 락 안에서 commitSeq 로 커밋 시각을 받아 새 버전을
+ *         연결하고, 락을 놓은 뒤 clock 을 커밋 시각으로 올려서 공개한다. 서로 다른 상품에 대한 쓰기는 여러 코어에서 동시에 실행된다.</li>
+ *     <li>공개 순서 : 먼저 받은 커밋 시각이 공개되기 전에 clock 이 그 뒤로 넘어가면, 그 시각으로 읽는 검색이 아직 연결되지 않은
+ *         버전을 놓친다. 그래서 clock 은 커밋 시각 순서대로만 올린다. 앞선 쓰기가 버전을 연결하고 공개할 때까지만 잠깐 기다린다.</li>
+ *     <li>읽기 : 시작할 때 clock 값을 스냅샷 시각으로 읽고, 각 상품에서 커밋 시각이 스냅샷 시각 이하인 가장 최신 버전만 본다.
+ *         락을 잡지 않으므로 쓰기가 진행 중이어도 기다리지 않고, 검색 결과 전체가 한 시점의 상태가 된다.</li>
+ *     <li>회수 : 진행 중인 검색은 activeReaders 에 스냅샷 시각을 등록한다. 가장 오래된 검색이 볼 버전까지만 남기고 그 이전
+ *         버전은 다음 수정 때 잘라낸다. 한 번에 한 스레드만 회수하고, 상품마다 그 상품의 락을 잡고 자른다.</li>
+ *     <li>조회 결과로는 항상 복사본을 돌려주므로, 호출한 쪽에서 객체를 바꿔도 저장소의 버전에는 영향이 없다.</li>
+ * </ul>
+ *
+ * <h2>보조 인덱스</h2>
+ * save, update 시점에 {@link PriceIndex}, {@link NGramIndex} 를 함께 갱신하고, maxPrice 나 itemName 조건이 있으면
+ * 전체 스캔 대신 인덱스로 후보를 찾는다. 두 조건이 모두 있으면 후보가 더 적은 쪽을 사용한다.<br>
+ * 과거 버전을 보는 검색이 있을 수 있으므로, 이전 값의 인덱스 항목은 그 버전이 회수될 때 함께 제거한다.
+ *
+ * <h2>병렬 스캔</h2>
+ * 인덱스를 쓸 수 없는 검색에서 저장된 상품이 많으면 크기가 제한된 ForkJoinPool 로 나눠서 스캔한다.
+ * 풀은 인스턴스마다 만들어지므로 다 쓴 뒤에는 close() 로 종료한다(빈으로 등록하면 컨텍스트가 종료될 때 호출된다).
  */
 @Repository
-public class MemoryItemRepository implements ItemRepository {
+public class MemoryItemRepository implements ItemRepository, AutoCloseable {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    private static final ConcurrentNavigableMap<Long, Version> store = new ConcurrentSkipListMap<>(); //static, id → 최신 버전
+    private static final IdAllocator idAllocator = new LocalIdAllocator(); //static
+    private static final PriceIndex priceIndex = new PriceIndex(); //static
+    private static final NGramIndex nameIndex = new NGramIndex(); //static
+    private static final AtomicInteger size = new AtomicInteger(); //static, ConcurrentSkipListMap.size() 는 O(n)
 
+    private static final int STRIPES = 64;
+    private static final ReentrantLock[] writeLocks = newLocks(STRIPES); //static, id 로 나눈 쓰기 락
+    private static final AtomicLong commitSeq = new AtomicLong(); //static, 마지막으로 발급한 커밋 시각
+    private static final AtomicLong clock = new AtomicLong(); //static, 마지막으로 공개된 커밋 시각
+    private static final AtomicLong reclaimHorizon = new AtomicLong(); //static, 회수를 시작할 때의 clock
+    private static final ConcurrentNavigableMap<Long, Integer> activeReaders = new ConcurrentSkipListMap<>(); //static, 스냅샷 시각 → 검색 수
+    private static final Set<Long> pendingReclaim = ConcurrentHashMap.newKeySet(); //static, 과거 버전이 남아있는 id
+    private static final AtomicBoolean reclaiming = new AtomicBoolean(); //static, 회수 중인 스레드가 있는지
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 100_000;
+    private static final int DEFAULT_MAX_PARALLEL_SCANS = 2;
+
+    private final int parallelThreshold;
+    private final ForkJoinPool scanPool;
+    private final Semaphore parallelScans;
+
+    public MemoryItemRepository() {
+        this(DEFAULT_PARALLEL_THRESHOLD, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PARALLEL_SCANS);
+    }
+
+    /**
+     * @param parallelThreshold 저장된 상품이 이 수 이상이면 전체 스캔을 병렬로 수행한다.
+     * @param parallelism 병렬 스캔에 사용할 ForkJoinPool 의 스레드 수
+     * @param maxParallelScans 동시에 실행할 수 있는 병렬 스캔 수
+     */
+    public MemoryItemRepository(int parallelThreshold, int parallelism, int maxParallelScans) {
+        this.parallelThreshold = parallelThreshold;
+        this.scanPool = new ForkJoinPool(parallelism);
+        this.parallelScans = new Semaphore(maxParallelScans);
+    }
+
+    /**
+     * 새 id 는 다른 쓰기와 겹치지 않으므로 락 없이 연결하고 공개한다.
+     */
     @Override
     public Item save(Item item) {
-        item.setId(++sequence);
-        store.put(item.getId(), item);
+        item.setId(idAllocator.nextId());
+        Item value = copy(item);
+        priceIndex.add(value.getPrice(), value.getId());
+        nameIndex.add(value.getItemName(), value.getId());
+        long commitTs = commitSeq.incrementAndGet();
+        try {
+            store.put(value.getId(), new Version(commitTs, value, null));
+            size.incrementAndGet();
+        } finally {
+            publish(commitTs);
+        }
         return item;
     }
 
+    /**
+     * 모든 상품에 같은 커밋 시각을 붙이고 clock 을 한 번만 올리기 때문에, 검색에서는 전부 보이거나 전부 보이지 않는다.
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> values = new ArrayList<>(items.size());
+        for (Item item : items) {
+            item.setId(idAllocator.nextId());
+            Item value = copy(item);
+            priceIndex.add(value.getPrice(), value.getId());
+            nameIndex.add(value.getItemName(), value.getId());
+            values.add(value);
+        }
+        long commitTs = commitSeq.incrementAndGet();
+        try {
+            for (Item value : values) {
+                store.put(value.getId(), new Version(commitTs, value, null));
+            }
+            size.addAndGet(values.size());
+        } finally {
+            publish(commitTs);
+        }
+        return new ArrayList<>(items);
+    }
+
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        Item value = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        value.setId(itemId);
+        long commitTs;
+        ReentrantLock writeLock = writeLock(itemId);
+        writeLock.lock();
+        try {
+            Version head = store.get(itemId);
+            if (head == null) {
+                throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+            }
+            //이전 값의 인덱스 항목은 과거 버전을 보는 검색을 위해 남겨두고, 버전이 회수될 때 제거한다.
+            priceIndex.add(value.getPrice(), itemId);
+            nameIndex.add(value.getItemName(), itemId);
+            commitTs = commitSeq.incrementAndGet(); //락 안에서 받으므로 같은 상품의 버전은 항상 커밋 시각 순서로 쌓인다.
+            store.put(itemId, new Version(commitTs, value, head));
+        } finally {
+            writeLock.unlock();
+        }
+        publish(commitTs);
+        pendingReclaim.add(itemId);
+        reclaim();
     }
 
+    /**
+     * 최신 버전은 그 자체로 한 시점의 상태이므로 스냅샷을 등록하지 않고 바로 읽는다.
+     */
     @Override
     public Optional<Item> findById(Long id) {
-        return Optional.ofNullable(store.get(id));
+        Version head = store.get(id);
+        return head == null ? Optional.empty() : Optional.of(copy(head.value));
     }
 
     /**
@@ -47,32 +186,341 @@ public class MemoryItemRepository implements ItemRepository {
      *     <li>여기서 자바 스트림을 사용한다.</li>
      *     <li>itemName 이나, maxPrice 가 null 이거나 비었으면 해당 조건을 무시한다.</li>
      *     <li>itemName 이나, maxPrice 에 값이 있을 때만 해당 조건으로 필터링 기능을 수행한다.</li>
+     *     <li>maxPrice 가 있으면 가격 인덱스에서, itemName 이 {@value NGramIndex#GRAM_SIZE} 글자 이상이면 n-gram
+     *         인덱스에서 후보 id 를 찾는다. 후보는 id 순으로 정렬해서 저장 순서를 유지하고, 마지막에 원래 조건으로
+     *         다시 확인하기 때문에 결과는 전체 스캔과 같다.</li>
+     *     <li>검색하는 동안 하나의 스냅샷 시각을 사용하므로, 도중에 수정이 커밋되어도 결과에는 반영되지 않는다.</li>
+     *     <li>size 가 있으면(키셋 페이징) afterId/beforeId 위치부터 읽기 시작해서 size 개를 채우면 멈춘다. 인덱스를 쓸 수
+     *         있으면 정렬한 후보 id 에서, 없으면 id 로 정렬된 store 에서 시작 위치를 찾는다. 앞 페이지를 건너뛰는 비용이 없다.</li>
      * </ul>
      */
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
+        Predicate<Item> condition = condition(cond);
+
+        long snapshot = beginRead();
+        try {
+            Collection<Long> ids = candidateIds(itemName, maxPrice);
+            if (cond.getSize() != null) {
+                return page(cond, ids, condition, snapshot);
+            }
+            if (ids == null) {
+                return scan(condition, snapshot);
+            }
+            return ids.stream()
+                    .distinct()
+                    .sorted()
+                    .map(id -> visible(store.get(id), snapshot))
+                    .filter(Objects::nonNull)
+                    .filter(condition)
+                    .map(MemoryItemRepository::copy)
+                    .collect(Collectors.toList());
+        } finally {
+            endRead(snapshot);
+        }
+    }
+
+    /**
+     * <h2>스트림으로 조회</h2>
+     * store 를 id 순서대로 한 건씩 읽으면서 스냅샷에 보이는 버전만 조건으로 걸러서 복사한다.
+     * <ul>
+     *     <li>인덱스 후보 목록도 만들지 않으므로, 결과를 모으지 않는 한 추가 메모리를 쓰지 않는다.</li>
+     *     <li>스냅샷은 Stream 을 닫을 때 해제된다. 닫지 않으면 그 시각 이후의 과거 버전을 회수할 수 없으므로
+     *         반드시 try-with-resources 로 사용한다.</li>
+     * </ul>
+     */
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        Predicate<Item> condition = condition(cond);
+        long snapshot = beginRead();
+        return range(cond).values().stream()
+                .map(head -> visible(head, snapshot))
+                .filter(Objects::nonNull)
+                .filter(condition)
+                .limit(cond.getSize() == null ? Long.MAX_VALUE : cond.getSize())
+                .map(MemoryItemRepository::copy)
+                .onClose(() -> endRead(snapshot));
+    }
+
+    /**
+     * <h2>키셋 페이징</h2>
+     * 다음 페이지는 afterId 다음 키부터 오름차순으로, 이전 페이지는 beforeId 앞 키부터 내림차순으로 읽다가 size 개를
+     * 채우면 멈춘다. 이전 페이지는 마지막에 오름차순으로 뒤집는다.<br>
+     * 인덱스 후보(candidateIds)가 있으면 후보 id 를 정렬한 집합에서 같은 위치(tailSet, headSet)를 찾아서 읽으므로,
+     * 조건에 맞는 상품이 드물어도 store 전체를 지나가지 않는다.
+     */
+    private List<Item> page(ItemSearchCond cond, Collection<Long> candidateIds, Predicate<Item> condition, long snapshot) {
+        Stream<Version> heads;
+        if (candidateIds == null) {
+            NavigableMap<Long, Version> range = range(cond);
+            heads = (cond.backward() ? range.descendingMap() : range).values().stream();
+        } else {
+            NavigableSet<Long> ids = new TreeSet<>(candidateIds);
+            if (cond.getAfterId() != null) {
+                ids = ids.tailSet(cond.getAfterId(), false);
+            }
+            if (cond.getBeforeId() != null) {
+                ids = ids.headSet(cond.getBeforeId(), false);
+            }
+            heads = (cond.backward() ? ids.descendingSet() : ids).stream().map(store::get);
+        }
+        List<Item> page = heads
+                .map(head -> visible(head, snapshot))
+                .filter(Objects::nonNull)
+                .filter(condition)
+                .limit(cond.getSize())
+                .map(MemoryItemRepository::copy)
+                .collect(Collectors.toList());
+        if (cond.backward()) {
+            Collections.reverse(page);
+        }
+        return page;
+    }
+
+    private static NavigableMap<Long, Version> range(ItemSearchCond cond) {
+        NavigableMap<Long, Version> range = store;
+        if (cond.getAfterId() != null) {
+            range = range.tailMap(cond.getAfterId(), false);
+        }
+        if (cond.getBeforeId() != null) {
+            range = range.headMap(cond.getBeforeId(), false);
+        }
+        return range;
+    }
+
+    private static Predicate<Item> condition(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
+        return item -> {
+            if (afterId != null && item.getId() <= afterId) {
+                return false;
+            }
+            if (beforeId != null && item.getId() >= beforeId) {
+                return false;
+            }
+            if (!ObjectUtils.isEmpty(itemName)
+                    && (item.getItemName() == null || !item.getItemName().contains(itemName))) {
+                return false;
+            }
+            if (maxPrice != null && (item.getPrice() == null || item.getPrice() > maxPrice)) {
+                return false;
+            }
+            return true;
+        };
+    }
+
+    /**
+     * 인덱스로 후보를 줄일 수 없으면 null 을 반환한다.
+     */
+    private Collection<Long> candidateIds(String itemName, Integer maxPrice) {
+        Collection<Long> nameIds = nameIndex.findCandidateIds(itemName);
+        Collection<Long> priceIds = maxPrice == null ? null : priceIndex.findIdsAtMost(maxPrice);
+
+        if (nameIds == null) {
+            return priceIds;
+        } else if (priceIds == null) {
+            return nameIds;
+        }
+        return nameIds.size() <= priceIds.size() ? nameIds : priceIds;
+    }
+
+    /**
+     * <h2>전체 스캔</h2>
+     * 저장된 상품이 parallelThreshold 이상이면 전용 ForkJoinPool 에서 병렬 스트림으로 나눠서 스캔한다.
+     * <ul>
+     *     <li>병렬 스트림은 작업을 시작한 ForkJoinPool 안에서 실행되기 때문에, 공용 풀(commonPool)을 쓰지 않고
+     *         parallelism 으로 크기를 제한한 풀을 사용한다.</li>
+     *     <li>동시에 실행할 수 있는 병렬 스캔은 maxParallelScans 개로 제한한다. 자리가 없으면 기다리지 않고 호출한
+     *         스레드에서 순차 스캔을 해서, 동시 요청이 많아도 풀에 작업이 몰리지 않게 한다.</li>
+     *     <li>store 는 id 순으로 정렬된 맵이고 병렬 스트림도 이 순서(encounter order)를 유지하므로, 결과는 순차
+     *         스캔과 같은 저장 순서를 가진다.</li>
+     * </ul>
+     */
+    private List<Item> scan(Predicate<Item> condition, long snapshot) {
+        if (size.get() >= parallelThreshold && !scanPool.isShutdown() && parallelScans.tryAcquire()) {
+            try {
+                return scanPool.submit(() -> store.values().parallelStream()
+                        .map(head -> visible(head, snapshot))
+                        .filter(Objects::nonNull)
+                        .filter(condition)
+                        .map(MemoryItemRepository::copy)
+                        .collect(Collectors.toList())).join();
+            } finally {
+                parallelScans.release();
+            }
+        }
         return store.values().stream()
-                .filter(item -> {
-                    if (ObjectUtils.isEmpty(itemName)) {
-                        return true;
-                    }
-                    return item.getItemName().contains(itemName);
-                }).filter(item -> {
-                    if (maxPrice == null) {
-                        return true;
-                    }
-                    return item.getPrice() <= maxPrice;
-                })
+                .map(head -> visible(head, snapshot))
+                .filter(Objects::nonNull)
+                .filter(condition)
+                .map(MemoryItemRepository::copy)
                 .collect(Collectors.toList());
     }
 
     /**
-     * 메모리에 저장된 Item 을 모두 삭제해서 초기화, 테스트 용도로만 사용한다.
+     * commitTs 보다 앞선 커밋이 모두 공개된 뒤에 clock 을 commitTs 로 올린다. 앞선 쓰기는 버전 하나를 연결하는
+     * 짧은 구간만 남아 있으므로 스핀으로 기다린다.
+     */
+    private static void publish(long commitTs) {
+        while (clock.get() != commitTs - 1) {
+            Thread.onSpinWait();
+        }
+        clock.set(commitTs);
+    }
+
+    private static ReentrantLock writeLock(Long id) {
+        return writeLocks[Long.hashCode(id) & (STRIPES - 1)];
+    }
+
+    private static ReentrantLock[] newLocks(int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    /**
+     * <h2>스냅샷 등록</h2>
+     * clock 을 읽은 뒤 등록하기 전에 회수가 시작되면, 회수하는 쪽은 이 스냅샷을 모른 채 버전을 잘라낼 수 있다.
+     * 회수는 reclaimHorizon 을 먼저 올린 뒤 activeReaders 를 보므로, 등록한 다음 reclaimHorizon 이 스냅샷 시각보다
+     * 크면 새 시각으로 다시 등록한다.
+     */
+    private static long beginRead() {
+        while (true) {
+            long snapshot = clock.get();
+            activeReaders.merge(snapshot, 1, Integer::sum);
+            if (reclaimHorizon.get() <= snapshot) {
+                return snapshot;
+            }
+            endRead(snapshot);
+        }
+    }
+
+    private static void endRead(long snapshot) {
+        activeReaders.computeIfPresent(snapshot, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * <h2>과거 버전 회수</h2>
+     * 진행 중인 검색 중 가장 오래된 스냅샷(없으면 현재 clock)이 보는 버전까지만 남기고, 그보다 오래된 버전은 잘라낸다.
+     * 잘라낸 버전의 가격, 상품명이 남은 버전에서 쓰이지 않으면 인덱스에서도 제거한다.
+     * <ul>
+     *     <li>이미 다른 스레드가 회수 중이면 기다리지 않고 돌아간다. 남은 id 는 다음 회수 때 처리된다.</li>
+     *     <li>상품마다 그 상품의 쓰기 락을 잡고 자른다. 동시에 수정된 새 버전의 인덱스 항목을 지우지 않기 위해서다.</li>
+     * </ul>
+     */
+    private static void reclaim() {
+        if (!reclaiming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = clock.get();
+            reclaimHorizon.set(now);
+            Map.Entry<Long, Integer> oldest = activeReaders.firstEntry();
+            long horizon = oldest == null ? now : Math.min(now, oldest.getKey());
+
+            pendingReclaim.removeIf(id -> {
+                ReentrantLock writeLock = writeLock(id);
+                writeLock.lock();
+                try {
+                    return prune(id, store.get(id), horizon);
+                } finally {
+                    writeLock.unlock();
+                }
+            });
+        } finally {
+            reclaiming.set(false);
+        }
+    }
+
+    /**
+     * @return 최신 버전만 남았으면 true
+     */
+    private static boolean prune(Long id, Version head, long horizon) {
+        if (head == null) {
+            return true;
+        }
+        Version keep = head;
+        while (keep != null && keep.commitTs > horizon) {
+            keep = keep.prev;
+        }
+        if (keep == null || keep.prev == null) {
+            return head.prev == null;
+        }
+
+        Version dropped = keep.prev;
+        keep.prev = null;
+
+        Set<Integer> retainedPrices = new HashSet<>();
+        List<String> retainedNames = new ArrayList<>();
+        for (Version v = head; v != null; v = v.prev) {
+            retainedPrices.add(v.value.getPrice());
+            retainedNames.add(v.value.getItemName());
+        }
+        for (Version v = dropped; v != null; v = v.prev) {
+            if (!retainedPrices.contains(v.value.getPrice())) {
+                priceIndex.remove(v.value.getPrice(), id);
+            }
+            nameIndex.remove(v.value.getItemName(), id, retainedNames);
+        }
+        return head.prev == null;
+    }
+
+    private static Item visible(Version head, long snapshot) {
+        for (Version v = head; v != null; v = v.prev) {
+            if (v.commitTs <= snapshot) {
+                return v.value;
+            }
+        }
+        return null;
+    }
+
+    private static Item copy(Item value) {
+        Item item = new Item(value.getItemName(), value.getPrice(), value.getQuantity());
+        item.setId(value.getId());
+        return item;
+    }
+
+    /**
+     * 병렬 스캔 풀을 종료한다. 저장된 데이터는 static 이라 그대로 남고, 이후 검색은 순차 스캔으로 수행한다.
+     */
+    @Override
+    public void close() {
+        scanPool.shutdown();
+    }
+
+    /**
+     * 메모리에 저장된 Item 을 모두 삭제해서 초기화, 테스트 용도로만 사용한다. 쓰기와 동시에 호출하지 않는다.
      */
     public void clearStore() {
         store.clear();
+        size.set(0);
+        priceIndex.clear();
+        nameIndex.clear();
+        pendingReclaim.clear();
+    }
+
+    /**
+     * 상품 하나의 버전. value 는 공개된 뒤로 바뀌지 않고, prev 만 회수할 때 끊어진다.
+     */
+    private static final class Version {
+        final long commitTs;
+        final Item value;
+        volatile Version prev;
+
+        Version(long commitTs, Item value, Version prev) {
+            this.commitTs = commitTs;
+            this.value = value;
+            this.prev = prev;
+        }
     }
 
 }
@@ -0,0 +1,113 @@
+package thespeace.springdb.repository.memory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h2>상품명 n-gram 역색인(gram → ids)</h2>
+ * 상품명을 길이 {@value #GRAM_SIZE} 의 조각(n-gram)으로 나눠서 각 조각이 들어있는 상품 id 를 모아둔다.<br>
+ * 검색어가 상품명에 포함되려면 검색어의 모든 n-gram 이 상품명에도 들어 있어야 하므로, 각 n-gram 의
+ * id 집합을 교집합하면 contains 검사를 할 후보를 크게 줄일 수 있다.
+ * <ul>
+ *     <li>String 의 char 단위로 자르기 때문에 한글 상품명도 {@code String.contains} 와 같은 기준으로 동작한다.</li>
+ *     <li>검색어가 {@value #GRAM_SIZE} 글자보다 짧으면 n-gram 을 만들 수 없으므로 후보를 줄이지 않는다.(null 반환)</li>
+ *     <li>후보에는 최종 결과보다 많은 id 가 들어있을 수 있다. 호출하는 쪽에서 반드시 contains 로 다시 확인해야 한다.</li>
+ * </ul>
+ */
+class NGramIndex {
+
+    static final int GRAM_SIZE = 3;
+
+    private final Map<String, Set<Long>> index = new ConcurrentHashMap<>();
+
+    void add(String text, Long id) {
+        for (String gram : grams(text)) {
+            addGram(gram, id);
+        }
+    }
+
+    void remove(String text, Long id) {
+        for (String gram : grams(text)) {
+            removeGram(gram, id);
+        }
+    }
+
+    /**
+     * 같은 상품에 아직 남아있는 이름(retainedTexts)에서 쓰이지 않는 text 의 n-gram 만 제거한다.
+     */
+    void remove(String text, Long id, Collection<String> retainedTexts) {
+        Set<String> retainedGrams = new HashSet<>();
+        for (String retained : retainedTexts) {
+            retainedGrams.addAll(grams(retained));
+        }
+        for (String gram : grams(text)) {
+            if (!retainedGrams.contains(gram)) {
+                removeGram(gram, id);
+            }
+        }
+    }
+
+    /**
+     * query 를 포함할 수 있는 상품 id 후보. query 가 너무 짧아서 색인을 쓸 수 없으면 null 을 반환한다.
+     */
+    Collection<Long> findCandidateIds(String query) {
+        if (query == null || query.length() < GRAM_SIZE) {
+            return null;
+        }
+
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> ids = index.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        //가장 작은 집합을 기준으로 나머지 집합에 모두 들어있는 id 만 남긴다.
+        List<Long> result = new ArrayList<>();
+        for (Long id : postings.get(0)) {
+            boolean matched = true;
+            for (int i = 1; i < postings.size() && matched; i++) {
+                matched = postings.get(i).contains(id);
+            }
+            if (matched) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        index.clear();
+    }
+
+    static Set<String> grams(String text) {
+        if (text == null || text.length() < GRAM_SIZE) {
+            return Set.of();
+        }
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private void addGram(String gram, Long id) {
+        index.compute(gram, (key, ids) -> {
+            if (ids == null) {
+                ids = ConcurrentHashMap.newKeySet();
+            }
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    private void removeGram(String gram, Long id) {
+        index.computeIfPresent(gram, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package thespeace.springdb.repository.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * <h2>가격 보조 인덱스(price → ids)</h2>
+ * 가격을 키로 정렬된 ConcurrentSkipListMap 에 상품 id 를 모아둔다.<br>
+ * {@code price <= maxPrice} 조건은 headMap 으로 범위를 바로 찾기 때문에 전체를 스캔하지 않고
+ * 조건에 맞는 상품 수에 비례하는 비용으로 조회할 수 있다.
+ * <ul>
+ *     <li>가격이 null 인 상품은 어떤 maxPrice 조건에도 맞지 않으므로 인덱스에 넣지 않는다.</li>
+ *     <li>키 단위 compute 를 사용해서 빈 id 집합을 제거하는 작업과 추가하는 작업이 서로 엇갈리지 않도록 한다.</li>
+ * </ul>
+ */
+class PriceIndex {
+
+    private final ConcurrentNavigableMap<Integer, Set<Long>> index = new ConcurrentSkipListMap<>();
+
+    void add(Integer price, Long id) {
+        if (price == null) {
+            return;
+        }
+        index.compute(price, (key, ids) -> {
+            if (ids == null) {
+                ids = ConcurrentHashMap.newKeySet();
+            }
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    void remove(Integer price, Long id) {
+        if (price == null) {
+            return;
+        }
+        index.computeIfPresent(price, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * maxPrice 이하인 상품 id 목록. 과거 버전이 회수되기 전까지는 같은 id 가 여러 가격에 함께 들어 있을 수 있으므로
+     * 호출하는 쪽에서 중복을 제거하고 실제 상품 가격으로 다시 확인해야 한다.
+     */
+    List<Long> findIdsAtMost(int maxPrice) {
+        List<Long> result = new ArrayList<>();
+        for (Set<Long> ids : index.headMap(maxPrice, true).values()) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+
+    void clear() {
+        index.clear();
+    }
+}
@@ -2,6 +2,7 @@ package thespeace.springdb.repository.mybatis;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import thespeace.springdb.domain.Item;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
@@ -27,9 +28,17 @@ public interface ItemMapper {
 
     void save(Item item);
 
-    void update(@Param("id") Long id, @Param("updateParam")ItemUpdateDto updateParam);
+    int update(@Param("id") Long id, @Param("updateParam")ItemUpdateDto updateParam);
 
-    List<Item> findAll(ItemSearchCond itemSearch);
+    void saveNameGrams(@Param("itemId") Long itemId, @Param("grams") List<String> grams);
+
+    void deleteNameGrams(Long itemId);
+
+    List<Item> findAll(@Param("cond") ItemSearchCond itemSearch,
+                       @Param("itemNameGrams") String[] itemNameGrams, @Param("itemNameGramCount") int itemNameGramCount);
+
+    Cursor<Item> streamAll(@Param("cond") ItemSearchCond itemSearch,
+                           @Param("itemNameGrams") String[] itemNameGrams, @Param("itemNameGramCount") int itemNameGramCount);
 
     Optional<Item> findById(Long id);
 }
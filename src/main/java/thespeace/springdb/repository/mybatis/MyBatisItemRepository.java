@@ -2,14 +2,30 @@ package thespeace.springdb.repository.mybatis;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import thespeace.springdb.domain.Item;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+import thespeace.springdb.repository.id.IdAllocator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * <h2>ItemRepository 를 구현</h2>
@@ -20,18 +36,72 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class MyBatisItemRepository implements ItemRepository {
 
+    private static final int BATCH_SIZE = 1000;
+
     private final ItemMapper itemMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final IdAllocator idAllocator;
 
     @Override
     public Item save(Item item) {
         log.info("itemMapper class={}", itemMapper.getClass());
+        item.setId(idAllocator.nextId());
         itemMapper.save(item);
+        saveNameGrams(itemMapper, item.getId(), item.getItemName());
         return item;
     }
 
+    /**
+     * <h2>일괄 저장 - BATCH 실행기</h2>
+     * <ul>
+     *     <li>{@code ExecutorType.BATCH} 로 연 SqlSession 은 같은 SQL을 addBatch() 로 모아두었다가 flushStatements()
+     *         할 때 executeBatch() 로 한 번에 실행한다.</li>
+     *     <li>id 는 IdAllocator 에서 미리 받아서 채운다. 생성된 키를 돌려받을 필요가 없다.</li>
+     *     <li>주입받은 ItemMapper(SqlSessionTemplate)는 SIMPLE 실행기라서, 한 트랜잭션 안에서 실행기를 바꿀 수 없다는
+     *         제약을 피하기 위해 SqlSessionFactory 에서 세션을 직접 연다. 스프링 트랜잭션이 있으면 같은 커넥션을 사용하고
+     *         커밋도 스프링 트랜잭션에 맡긴다.</li>
+     *     <li>BATCH 실행기는 연속된 같은 SQL만 하나의 배치로 묶는다. 그래서 상품을 모두 저장한 뒤에 상품명 n-gram 을 저장한다.</li>
+     * </ul>
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> list = new ArrayList<>(items);
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            ItemMapper batchMapper = session.getMapper(ItemMapper.class);
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).setId(idAllocator.nextId());
+                batchMapper.save(list.get(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    session.flushStatements();
+                }
+            }
+            session.flushStatements();
+            for (Item item : list) {
+                saveNameGrams(batchMapper, item.getId(), item.getItemName());
+            }
+            session.flushStatements();
+            session.commit();
+        }
+        return list;
+    }
+
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        itemMapper.update(itemId, updateParam);
+        if (itemMapper.update(itemId, updateParam) == 0) { //없는 id 면 색인에 n-gram 을 남기지 않는다.
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1);
+        }
+        itemMapper.deleteNameGrams(itemId); //상품명이 바뀌었을 수 있으므로 n-gram 을 다시 저장한다.
+        saveNameGrams(itemMapper, itemId, updateParam.getItemName());
+    }
+
+    /**
+     * 상품명 검색 색인(item_name_gram)을 저장한다. n-gram 이 없는 짧은 상품명은 빈 VALUES 가 되므로 호출하지 않는다.
+     */
+    private static void saveNameGrams(ItemMapper mapper, Long itemId, String itemName) {
+        List<String> grams = ItemNameGrams.grams(itemName);
+        if (!grams.isEmpty()) {
+            mapper.saveNameGrams(itemId, grams);
+        }
     }
 
     @Override
@@ -41,6 +111,45 @@ public class MyBatisItemRepository implements ItemRepository {
 
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
-        return itemMapper.findAll(cond);
+        List<String> grams = ItemNameGrams.grams(cond.getItemName());
+        List<Item> items = itemMapper.findAll(cond, nameGramsParam(grams), grams.size());
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
+
+    /**
+     * <h2>검색 결과를 커서로 조회</h2>
+     * <ul>
+     *     <li>매퍼가 {@code Cursor<Item>} 을 반환하면 MyBatis 는 ResultSet 을 열어둔 채로 한 행씩 Item 으로 변환한다.</li>
+     *     <li>SqlSessionTemplate 은 트랜잭션이 없으면 매퍼 호출이 끝나자마자 세션을 닫아서 커서를 읽을 수 없다.
+     *         따라서 호출하는 쪽의 트랜잭션을 필수로 요구한다.</li>
+     *     <li>Stream 을 닫으면 커서도 닫힌다.</li>
+     * </ul>
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        List<String> grams = ItemNameGrams.grams(cond.getItemName());
+        Cursor<Item> cursor = itemMapper.streamAll(cond, nameGramsParam(grams), grams.size());
+        return StreamSupport.stream(cursor.spliterator(), false)
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * 상품명 색인 서브쿼리에 바인딩할 n-gram 배열. 검색어가 짧아서 n-gram 이 없으면 null 이고, 매퍼는 서브쿼리를 만들지 않는다.
+     */
+    private static String[] nameGramsParam(List<String> grams) {
+        return grams.isEmpty() ? null : grams.toArray(String[]::new);
     }
-}
\ No newline at end of file
+}
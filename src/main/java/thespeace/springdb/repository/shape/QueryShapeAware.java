@@ -0,0 +1,9 @@
+package thespeace.springdb.repository.shape;
+
+/**
+ * 검색 쿼리를 {@link QueryShapeRegistry} 로 관리하는 리포지토리. 모양별 사용 횟수를 메트릭으로 내보낼 때 사용한다.
+ */
+public interface QueryShapeAware {
+
+    QueryShapeRegistry<?> queryShapes();
+}
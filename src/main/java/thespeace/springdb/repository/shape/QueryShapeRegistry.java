@@ -0,0 +1,165 @@
+package thespeace.springdb.repository.shape;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <h2>검색 모양(shape)별로 미리 만든 쿼리 저장소</h2>
+ * 동적 쿼리는 검색 조건의 값이 아니라 어떤 조건이 들어있는지(모양)에 따라서만 달라진다. 모양은 많지 않으므로
+ * 모양마다 처음 한 번만 쿼리를 만들어 두고, 이후 호출은 저장해 둔 쿼리에 파라미터만 바인딩한다.
+ * <ul>
+ *     <li>모양 : itemName, maxPrice, afterId, beforeId, size 가 있는지 여부와, itemName 이 n-gram 색인을 쓰기에 너무 짧은지
+ *         (ItemNameGrams). 최대 2^6 = 64 가지이고 비트 하나씩을 사용한 int 를 배열 인덱스로 쓴다. 맵을 찾거나 키 객체를 만들
+ *         필요가 없다.</li>
+ *     <li>Q : 리포지토리가 미리 만들어 두는 것. SQL 문자열, 파싱해 둔 SQL 처럼 기술마다 다르다.</li>
+ *     <li>두 스레드가 동시에 같은 모양을 처음 만들면 둘 다 만들 수 있지만 먼저 저장한 것 하나만 사용한다.
+ *         쿼리를 만드는 함수는 부작용이 없어야 한다.</li>
+ *     <li>모양마다 사용 횟수를 세고, MeterRegistry 에 연결되면 item.query.shape (FunctionCounter) 로 내보낸다.
+ *         repository, shape 태그로 어떤 모양이 자주 쓰이는지(인덱스를 어디에 만들지) 확인할 수 있다.</li>
+ * </ul>
+ */
+@Slf4j
+public class QueryShapeRegistry<Q> implements MeterBinder {
+
+    private static final int NAME = 1;
+    private static final int PRICE = 1 << 1;
+    private static final int AFTER = 1 << 2;
+    private static final int BEFORE = 1 << 3;
+    private static final int PAGE = 1 << 4;
+    private static final int SCAN = 1 << 5;
+    private static final int SHAPES = 1 << 6;
+
+    private final String repository;
+    private final Function<ItemSearchCond, Q> compiler;
+    private final AtomicReferenceArray<Q> compiled = new AtomicReferenceArray<>(SHAPES);
+    private final LongAdder[] hits = new LongAdder[SHAPES];
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * @param repository 메트릭 태그에 사용할 리포지토리 이름
+     * @param compiler   검색 조건으로 쿼리를 만드는 함수. 조건의 값이 아니라 모양만 보고 만들어야 한다.
+     */
+    public QueryShapeRegistry(String repository, Function<ItemSearchCond, Q> compiler) {
+        this.repository = repository;
+        this.compiler = compiler;
+        for (int shape = 0; shape < SHAPES; shape++) {
+            hits[shape] = new LongAdder();
+        }
+    }
+
+    /**
+     * 검색 조건의 모양에 맞는 쿼리를 반환한다. 처음 보는 모양이면 이때 만든다.
+     */
+    public Q get(ItemSearchCond cond) {
+        int shape = shapeOf(cond);
+        hits[shape].increment();
+
+        Q query = compiled.get(shape);
+        if (query != null) {
+            return query;
+        }
+        query = compiler.apply(cond);
+        if (compiled.compareAndSet(shape, null, query)) {
+            log.info("query shape compiled repository={} shape={} query={}", repository, name(shape), query);
+            register(shape);
+            return query;
+        }
+        return compiled.get(shape);
+    }
+
+    /**
+     * 지금까지 만들어진 모양별 사용 횟수.
+     */
+    public Map<String, Long> hits() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int shape = 0; shape < SHAPES; shape++) {
+            if (compiled.get(shape) != null) {
+                result.put(name(shape), hits[shape].sum());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 이미 만들어진 모양의 카운터를 등록하고, 이후 만들어지는 모양은 만들 때 등록한다.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        for (int shape = 0; shape < SHAPES; shape++) {
+            if (compiled.get(shape) != null) {
+                register(shape);
+            }
+        }
+    }
+
+    private void register(int shape) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        FunctionCounter.builder("item.query.shape", hits[shape], LongAdder::sum)
+                .description("모양별 검색 쿼리 사용 횟수")
+                .tag("repository", repository)
+                .tag("shape", name(shape))
+                .register(registry);
+    }
+
+    private static int shapeOf(ItemSearchCond cond) {
+        int shape = 0;
+        if (StringUtils.hasText(cond.getItemName())) {
+            shape |= NAME;
+            if (!ItemNameGrams.indexable(cond.getItemName())) {
+                shape |= SCAN;
+            }
+        }
+        if (cond.getMaxPrice() != null) {
+            shape |= PRICE;
+        }
+        if (cond.getAfterId() != null) {
+            shape |= AFTER;
+        }
+        if (cond.getBeforeId() != null) {
+            shape |= BEFORE;
+        }
+        if (cond.getSize() != null) {
+            shape |= PAGE;
+        }
+        return shape;
+    }
+
+    /**
+     * {@link ItemSearchCond#shape()} 와 같은 이름(name, price, both, none)에 키셋 조건을 붙인다. 예) name+after+page<br>
+     * 상품명이 짧아서 like 로만 검색하면 +scan 을 붙인다. 예) name+scan
+     */
+    private static String name(int shape) {
+        boolean name = (shape & NAME) != 0;
+        boolean price = (shape & PRICE) != 0;
+        StringBuilder result = new StringBuilder(name && price ? "both" : name ? "name" : price ? "price" : "none");
+        if ((shape & AFTER) != 0) {
+            result.append("+after");
+        }
+        if ((shape & BEFORE) != 0) {
+            result.append("+before");
+        }
+        if ((shape & PAGE) != 0) {
+            result.append("+page");
+        }
+        if ((shape & SCAN) != 0) {
+            result.append("+scan");
+        }
+        return result.toString();
+    }
+}
@@ -1,17 +1,31 @@
 package thespeace.springdb.repository.v2;
 
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
+import thespeace.springdb.cache.ItemSecondLevelCache;
 import thespeace.springdb.domain.Item;
 import thespeace.springdb.domain.QItem;
+import thespeace.springdb.repository.ItemListDto;
 import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+import thespeace.springdb.repository.jpa.ItemDirectUpdate;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static thespeace.springdb.domain.QItem.item;
+import static thespeace.springdb.domain.QItemNameGram.itemNameGram;
 
 /**
  * <h2>Querydsl을 사용해서 복잡한 쿼리 기능을 제공하는 리포지토리</h2>
@@ -24,25 +38,129 @@ import static thespeace.springdb.domain.QItem.item;
 @Repository
 public class ItemQueryRepositoryV2 {
 
+    private static final int FETCH_SIZE = 500;
+
+    private final EntityManager em;
     private final JPAQueryFactory query;
+    private final ItemDirectUpdate directUpdate;
 
     public ItemQueryRepositoryV2(EntityManager em) {
+        this.em = em;
         this.query = new JPAQueryFactory(em);
+        this.directUpdate = new ItemDirectUpdate(em);
+    }
+
+    /**
+     * <h2>엔티티를 조회하지 않는 수정</h2>
+     * UPDATE 를 바로 실행하고 영향받은 행 수를 반환한다. 0 이면 없는 id 이다.<br>
+     * Querydsl update 는 JPQL UPDATE 라서 커밋할 때 Item 2차 캐시 영역 전체를 비운다. 수정한 상품만 캐시에서 지우도록
+     * ItemDirectUpdate 를 사용한다.
+     */
+    public long update(Long itemId, ItemUpdateDto updateParam) {
+        return directUpdate.execute(itemId, updateParam);
     }
 
+    /**
+     * <h2>검색 결과 캐시(쿼리 캐시)</h2>
+     * 쿼리 캐시를 켜면(item.cache.query.enabled) 같은 JPQL, 같은 파라미터의 결과(id 목록)를
+     * {@value ItemSecondLevelCache#SEARCH_REGION} 영역에 저장하고, 상품은 2차 캐시에서 가져온다.
+     * item 테이블이 바뀌면 이전 결과는 사용하지 않는다. 쿼리 캐시가 꺼져 있으면 하이버네이트가 이 힌트를 무시한다.
+     */
     public List<Item> findAll(ItemSearchCond cond) {
-        return query.select(item)
-                .from(item)
-                .where(
-                        likeItemName(cond.getItemName()),
-                        maxPrice(cond.getMaxPrice())
-                )
-                .fetch();
+        List<Item> items = new ArrayList<>(searchQuery(cond)
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .setHint(HibernateHints.HINT_CACHE_REGION, ItemSecondLevelCache.SEARCH_REGION)
+                .fetch());
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
+
+    /**
+     * <h2>목록 화면용 조회</h2>
+     * <ul>
+     *     <li>{@code Projections.constructor} 로 필요한 컬럼만 읽어서 {@link ItemListDto} 를 바로 만든다. 엔티티가 아니므로
+     *         영속성 컨텍스트에 들어가지 않고, 변경 감지용 스냅샷도, 플러시할 것도 없다.</li>
+     *     <li>HINT_READ_ONLY, HINT_FLUSH_MODE(MANUAL) 는 이 쿼리 전에 자동 플러시(변경 감지)를 하지 않게 한다.
+     *         읽기 전용 트랜잭션(readOnly = true)에서 호출하면 스프링도 세션을 같은 상태로 둔다.</li>
+     *     <li>그래서 쓰기 트랜잭션 안에서 호출하면 아직 플러시하지 않은 변경은 결과에 보이지 않는다. 필요하면 먼저 flush 한다.</li>
+     * </ul>
+     */
+    public List<ItemListDto> findList(ItemSearchCond cond) {
+        List<ItemListDto> items = new ArrayList<>(search(query
+                .select(Projections.constructor(ItemListDto.class,
+                        item.id, item.itemName, item.price, item.quantity))
+                .from(item), cond)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_FLUSH_MODE, FlushMode.MANUAL)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .fetch());
+        if (cond.backward()) {
+            Collections.reverse(items); //이전 페이지는 id 내림차순으로 조회했으므로 뒤집는다.
+        }
+        return items;
+    }
+
+    /**
+     * <h2>검색 결과를 스트림으로 조회</h2>
+     * <ul>
+     *     <li>{@code stream()} 은 JPA getResultStream() 을 호출하고, 하이버네이트는 이를 ScrollableResults(전진 전용
+     *         커서)로 구현한다. fetch size 만큼씩 가져오므로 전체 결과를 한 번에 읽지 않는다.</li>
+     *     <li>읽은 엔티티가 영속성 컨텍스트에 계속 쌓이지 않도록 한 건씩 detach 한다.</li>
+     *     <li>트랜잭션 안에서 호출하고, 사용 후 반드시 닫아야 한다.</li>
+     * </ul>
+     */
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (cond.backward()) { //이전 페이지는 크기가 size 로 제한되므로 모아서 뒤집는다.
+            return findAll(cond).stream();
+        }
+        return searchQuery(cond)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .stream()
+                .peek(em::detach);
+    }
+
+    /**
+     * 키셋 페이징 : offset() 대신 afterId(), beforeId() 조건으로 PK 인덱스에서 시작 위치를 찾고 size 개만 가져온다.
+     * 이전 페이지는 id 내림차순으로 가져오므로 호출하는 쪽에서 뒤집는다.
+     */
+    private JPAQuery<Item> searchQuery(ItemSearchCond cond) {
+        return search(query.selectFrom(item), cond);
     }
 
+    private <T> JPAQuery<T> search(JPAQuery<T> search, ItemSearchCond cond) {
+        search.where(
+                likeItemName(cond.getItemName()),
+                maxPrice(cond.getMaxPrice()),
+                afterId(cond.getAfterId()),
+                beforeId(cond.getBeforeId())
+        );
+        if (cond.getSize() != null) {
+            search.orderBy(cond.backward() ? item.id.desc() : item.id.asc())
+                    .limit(cond.getSize());
+        }
+        return search;
+    }
+
+    /**
+     * 상품명이 3글자 이상이면 n-gram 을 모두 가진 상품만 서브쿼리로 고르고, like 는 그 후보만 확인한다.(ItemNameGrams 참고)
+     */
     private BooleanExpression likeItemName(String itemName) {
         if(StringUtils.hasText(itemName)) {
-            return item.itemName.like("%" + itemName + "%");
+            BooleanExpression like = item.itemName.like("%" + itemName + "%");
+            if (!ItemNameGrams.indexable(itemName)) {
+                return like;
+            }
+            List<String> grams = ItemNameGrams.grams(itemName);
+            return item.id.in(JPAExpressions
+                    .select(itemNameGram.itemId)
+                    .from(itemNameGram)
+                    .where(itemNameGram.gram.in(grams))
+                    .groupBy(itemNameGram.itemId)
+                    .having(itemNameGram.itemId.count().eq((long) grams.size())))
+                    .and(like);
         }
         return null;
     }
@@ -53,4 +171,18 @@ public class ItemQueryRepositoryV2 {
         }
         return null;
     }
+
+    private BooleanExpression afterId(Long afterId) {
+        if(afterId != null) {
+            return item.id.gt(afterId);
+        }
+        return null;
+    }
+
+    private BooleanExpression beforeId(Long beforeId) {
+        if(beforeId != null) {
+            return item.id.lt(beforeId);
+        }
+        return null;
+    }
 }
@@ -1,19 +1,34 @@
 package thespeace.springdb.service;
 
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemListDto;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ItemService {
 
     Item save(Item item);
 
+    List<Item> saveAll(Collection<Item> items);
+
     void update(Long itemId, ItemUpdateDto updateParam);
 
     Optional<Item> findById(Long id);
 
     List<Item> findItems(ItemSearchCond itemSearch);
+
+    /**
+     * 목록 화면용 검색. 결과는 수정할 수 없는 {@link ItemListDto} 이고 읽기 전용 트랜잭션에서 조회한다.
+     */
+    List<ItemListDto> findItemList(ItemSearchCond itemSearch);
+
+    /**
+     * 검색 결과를 메모리에 모으지 않고 한 건씩 action 에 넘긴다. 커서는 메서드가 끝나기 전에 닫힌다.
+     */
+    void forEachItem(ItemSearchCond itemSearch, Consumer<Item> action);
 }
@@ -1,14 +1,19 @@
 package thespeace.springdb.service;
 
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemListDto;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -21,18 +26,43 @@ public class ItemServiceV1 implements ItemService {
         return itemRepository.save(item);
     }
 
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        return itemRepository.saveAll(items);
+    }
+
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
         itemRepository.update(itemId, updateParam);
     }
 
     @Override
+    @Transactional(readOnly = true) //읽기/쓰기 분리 데이터소스를 사용하면 읽기 복제본에서 실행한다.
     public Optional<Item> findById(Long id) {
         return itemRepository.findById(id);
     }
 
     @Override
+    @Transactional(readOnly = true) //읽기/쓰기 분리 데이터소스를 사용하면 읽기 복제본에서 실행한다.
     public List<Item> findItems(ItemSearchCond cond) {
         return itemRepository.findAll(cond);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemListDto> findItemList(ItemSearchCond cond) {
+        return itemRepository.findList(cond);
+    }
+
+    /**
+     * MyBatis 커서나 JPA 결과 스트림은 트랜잭션(커넥션)이 살아 있는 동안만 읽을 수 있으므로, 스트림을 다 소비할 때까지
+     * 읽기 전용 트랜잭션을 유지하고 try-with-resources 로 커서를 닫는다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachItem(ItemSearchCond cond, Consumer<Item> action) {
+        try (Stream<Item> items = itemRepository.streamAll(cond)) {
+            items.forEach(action);
+        }
+    }
 }
@@ -1,19 +1,27 @@
 package thespeace.springdb.service;
 
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemListDto;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
 import thespeace.springdb.repository.v2.ItemQueryRepositoryV2;
 import thespeace.springdb.repository.v2.ItemRepositoryV2;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
- * ItemServiceV2 는 ItemRepositoryV2 와 ItemQueryRepositoryV2 를 의존한다.
+ * ItemServiceV2 는 ItemRepositoryV2 와 ItemQueryRepositoryV2 를 의존한다.<br>
+ * 조회 메서드는 {@code @Transactional(readOnly = true)} 이다. 읽기/쓰기 분리 데이터소스(ReplicaRoutingDataSource)를 사용하면
+ * 읽기 복제본에서 실행되고, JPA 는 플러시와 스냅샷(변경 감지)을 생략한다.
+ * (jakarta.transaction.Transactional 에는 readOnly 가 없어서 스프링의 @Transactional 을 사용한다.)
  */
 @Service
 @RequiredArgsConstructor
@@ -29,21 +37,44 @@ public class ItemServiceV2 implements ItemService{
         return itemRepositoryV2.save(item);
     }
 
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        return itemRepositoryV2.saveAll(items);
+    }
+
+    /**
+     * 상품을 조회해서 변경 감지로 수정하지 않고 UPDATE 를 바로 실행한다. 없는 id 는 영향받은 행 수(0)로 알 수 있다.
+     */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = itemRepositoryV2.findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        if (itemQueryRepositoryV2.update(itemId, updateParam) == 0) {
+            throw new EmptyResultDataAccessException("Item not found. id=" + itemId, 1); //ItemRepository.update 와 같은 예외
+        }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         return itemRepositoryV2.findById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Item> findItems(ItemSearchCond cond) {
         return itemQueryRepositoryV2.findAll(cond);
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemListDto> findItemList(ItemSearchCond cond) {
+        return itemQueryRepositoryV2.findList(cond);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachItem(ItemSearchCond cond, Consumer<Item> action) {
+        try (Stream<Item> items = itemQueryRepositoryV2.streamAll(cond)) {
+            items.forEach(action);
+        }
+    }
+}
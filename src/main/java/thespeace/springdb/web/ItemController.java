@@ -1,15 +1,20 @@
 package thespeace.springdb.web;
 
 import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemListDto;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
 import thespeace.springdb.service.ItemService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 @Controller
@@ -17,15 +22,68 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
 
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ItemService itemService;
 
+    /**
+     * 상품 목록을 키셋 페이징으로 보여준다.
+     * <ul>
+     *     <li>다음 페이지 링크는 현재 페이지 마지막 id 를 afterId 로, 이전 페이지 링크는 첫 id 를 beforeId 로 넘긴다.</li>
+     *     <li>size 보다 한 건 더 조회해서, 읽는 방향으로 페이지가 더 있는지 확인한다. 반대 방향은 afterId, beforeId 가
+     *         있다는 것 자체로 페이지가 있다고 본다.</li>
+     *     <li>화면은 보여주기만 하므로 엔티티 대신 {@link ItemListDto} 를 읽기 전용 트랜잭션에서 조회한다.</li>
+     * </ul>
+     */
     @GetMapping
     public String items(@ModelAttribute("itemSearch") ItemSearchCond itemSearch, Model model) {
-        List<Item> items = itemService.findItems(itemSearch);
+        int size = itemSearch.getSize() == null ? PAGE_SIZE : Math.min(Math.max(itemSearch.getSize(), 1), MAX_PAGE_SIZE);
+        itemSearch.setSize(size + 1);
+        List<ItemListDto> items = new ArrayList<>(itemService.findItemList(itemSearch));
+        itemSearch.setSize(size);
+
+        boolean backward = itemSearch.backward();
+        boolean more = items.size() > size;
+        if (more) {
+            items.remove(backward ? 0 : items.size() - 1);
+        }
+        boolean hasNext = backward || more;
+        boolean hasPrev = backward ? more : itemSearch.getAfterId() != null;
+
         model.addAttribute("items", items);
+        model.addAttribute("nextAfterId", hasNext && !items.isEmpty() ? items.get(items.size() - 1).id() : null);
+        model.addAttribute("prevBeforeId", hasPrev && !items.isEmpty() ? items.get(0).id() : null);
         return "items";
     }
 
+    /**
+     * 검색 결과를 CSV로 내려받는다. 결과를 리스트로 모으지 않고 한 건씩 응답에 쓰기 때문에 상품 수와 상관없이
+     * 메모리 사용량이 일정하다.
+     */
+    @GetMapping(value = "/export", produces = "text/csv")
+    public void export(@ModelAttribute("itemSearch") ItemSearchCond itemSearch, HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"items.csv\"");
+
+        PrintWriter writer = response.getWriter();
+        writer.println("id,itemName,price,quantity");
+        itemService.forEachItem(itemSearch, item -> writer.println(
+                item.getId() + "," + csv(item.getItemName()) + "," + csv(item.getPrice()) + "," + csv(item.getQuantity())));
+        writer.flush();
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
     @GetMapping("/{itemId}")
     public String item(@PathVariable("itemId") long itemId, Model model) {
         Item item = itemService.findById(itemId).get();
@@ -0,0 +1,48 @@
+package thespeace.springdb.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.r2dbc.core.DatabaseClient;
+import thespeace.springdb.reactive.repository.R2dbcItemRepository;
+import thespeace.springdb.reactive.repository.ReactiveItemRepository;
+
+/**
+ * <h2>리액티브 애플리케이션(WebFlux + R2DBC)</h2>
+ * SpringDbApplication(서블릿 + JDBC)과 같은 테이블을 논블로킹으로 사용하는 별도 애플리케이션이다.
+ * 실행 : {@code ./gradlew bootRunReactive}
+ * <ul>
+ *     <li>src/reactive 소스셋은 main 의 클래스와 의존성을 그대로 가지고 있어서 톰캣, JDBC, JPA 도 클래스패스에 있다.
+ *         그래서 웹 애플리케이션 종류를 REACTIVE 로 지정하고, 데이터소스 자동 설정을 제외해서 JDBC, JPA, MyBatis 가
+ *         등록되지 않게 한다.</li>
+ *     <li>nettyReactiveWebServerFactory : 리액티브 웹 서버도 톰캣이 먼저 선택되므로, Netty 를 직접 등록해서 적은 수의
+ *         이벤트 루프 스레드로 요청을 처리한다.</li>
+ *     <li>spring.config.name=reactive : main 의 application.properties 대신 reactive.properties 를 읽는다.</li>
+ * </ul>
+ */
+@SpringBootApplication(scanBasePackages = "thespeace.springdb.reactive.web", exclude = DataSourceAutoConfiguration.class)
+public class ReactiveItemApplication {
+
+    public static void main(String[] args) {
+        builder().run(args);
+    }
+
+    public static SpringApplicationBuilder builder() {
+        return new SpringApplicationBuilder(ReactiveItemApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .properties("spring.config.name=reactive");
+    }
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ReactiveItemRepository reactiveItemRepository(DatabaseClient databaseClient) {
+        return new R2dbcItemRepository(databaseClient);
+    }
+}
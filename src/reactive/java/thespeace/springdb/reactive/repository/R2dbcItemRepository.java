@@ -0,0 +1,217 @@
+package thespeace.springdb.reactive.repository;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+import thespeace.springdb.repository.id.SequenceIdAllocator;
+import thespeace.springdb.repository.shape.QueryShapeRegistry;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * <h2>R2DBC DatabaseClient</h2>
+ * JdbcTemplateItemRepositoryV2 와 같은 SQL(이름 지정 파라미터, n-gram 색인, 키셋 페이징)을 R2DBC 로 실행한다.
+ * <ul>
+ *     <li>DatabaseClient 는 커넥션을 빌리고, 결과를 구독자가 요청한 만큼 흘려보낸 뒤 반납한다. 기다리는 동안 스레드를
+ *         붙잡지 않는다.</li>
+ *     <li>id : 다른 리포지토리와 같이 item_seq 를 pooled-lo 방식으로 사용한다(ReactiveSequenceIdAllocator). 시퀀스는
+ *         {@value SequenceIdAllocator#ALLOCATION_SIZE}개 저장할 때마다 한 번 조회한다.</li>
+ *     <li>{@code in (:itemNameGrams)} : 컬렉션을 바인딩하면 DatabaseClient 가 {@code (?, ?, ...)} 로 펼친다.</li>
+ *     <li>save, update 는 item, item_name_gram 을 함께 바꾸므로 R2dbcTransactionManager 트랜잭션 안에서 실행한다.</li>
+ * </ul>
+ */
+public class R2dbcItemRepository implements ReactiveItemRepository {
+
+    private static final String COLUMNS = "id, item_name, price, quantity";
+
+    private final DatabaseClient client;
+    private final ReactiveSequenceIdAllocator idAllocator;
+    private final QueryShapeRegistry<String> searchSqls =
+            new QueryShapeRegistry<>(getClass().getSimpleName(), R2dbcItemRepository::searchSql);
+
+    public R2dbcItemRepository(DatabaseClient client) {
+        this.client = client;
+        this.idAllocator = new ReactiveSequenceIdAllocator(client,
+                SequenceIdAllocator.ITEM_SEQUENCE, SequenceIdAllocator.ALLOCATION_SIZE);
+    }
+
+    @Override
+    @Transactional
+    public Mono<Item> save(Item item) {
+        return idAllocator.nextId()
+                .flatMap(id -> {
+                    GenericExecuteSpec insert = client.sql("insert into item(id, item_name, price, quantity) " +
+                            "values (:id, :itemName, :price, :quantity)").bind("id", id);
+                    return bindValues(insert, item.getItemName(), item.getPrice(), item.getQuantity())
+                            .then()
+                            .then(insertGrams(id, item.getItemName()))
+                            .then(Mono.fromSupplier(() -> {
+                                item.setId(id);
+                                return item;
+                            }));
+                });
+    }
+
+    @Override
+    @Transactional
+    public Mono<Void> update(Long itemId, ItemUpdateDto updateParam) {
+        GenericExecuteSpec update = client.sql("update item " +
+                "set item_name=:itemName, price=:price, quantity=:quantity " +
+                "where id=:id").bind("id", itemId);
+        return bindValues(update, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity())
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated == 0
+                        ? Mono.<Void>error(new EmptyResultDataAccessException("Item not found. id=" + itemId, 1))
+                        : client.sql("delete from item_name_gram where item_id = :itemId").bind("itemId", itemId)
+                        .then()
+                        .then(insertGrams(itemId, updateParam.getItemName())));
+    }
+
+    @Override
+    public Mono<Item> findById(Long id) {
+        return client.sql("select " + COLUMNS + " from item where id = :id")
+                .bind("id", id)
+                .map(R2dbcItemRepository::toItem)
+                .one();
+    }
+
+    /**
+     * 이전 페이지는 id 내림차순으로 size 개를 읽으므로 모아서 뒤집는다. 나머지는 한 건씩 흘려보낸다.
+     */
+    @Override
+    public Flux<Item> findAll(ItemSearchCond cond) {
+        GenericExecuteSpec search = client.sql(searchSqls.get(cond));
+        if (StringUtils.hasText(cond.getItemName())) {
+            search = search.bind("itemName", cond.getItemName());
+            if (ItemNameGrams.indexable(cond.getItemName())) {
+                List<String> grams = ItemNameGrams.grams(cond.getItemName());
+                search = search.bind("itemNameGrams", grams)
+                        .bind("itemNameGramCount", grams.size());
+            }
+        }
+        if (cond.getMaxPrice() != null) {
+            search = search.bind("maxPrice", cond.getMaxPrice());
+        }
+        if (cond.getAfterId() != null) {
+            search = search.bind("afterId", cond.getAfterId());
+        }
+        if (cond.getBeforeId() != null) {
+            search = search.bind("beforeId", cond.getBeforeId());
+        }
+        if (cond.getSize() != null) {
+            search = search.bind("size", cond.getSize());
+        }
+
+        Flux<Item> items = search.map(R2dbcItemRepository::toItem).all();
+        if (cond.backward()) {
+            return items.collectList().flatMapIterable(list -> {
+                Collections.reverse(list);
+                return list;
+            });
+        }
+        return items;
+    }
+
+    /**
+     * 상품명의 n-gram 을 한 번의 다중 행 INSERT({@code values (:gram0, :itemId), (:gram1, :itemId), ...})로 저장한다.
+     * n-gram 이 없는 짧은 상품명은 빈 VALUES 가 되므로 실행하지 않는다.
+     */
+    private Mono<Void> insertGrams(Long itemId, String itemName) {
+        List<String> grams = ItemNameGrams.grams(itemName);
+        if (grams.isEmpty()) {
+            return Mono.empty();
+        }
+        StringJoiner values = new StringJoiner(", ", "insert into item_name_gram(gram, item_id) values ", "");
+        for (int i = 0; i < grams.size(); i++) {
+            values.add("(:gram" + i + ", :itemId)");
+        }
+        GenericExecuteSpec insert = client.sql(values.toString()).bind("itemId", itemId);
+        for (int i = 0; i < grams.size(); i++) {
+            insert = insert.bind("gram" + i, grams.get(i));
+        }
+        return insert.then();
+    }
+
+    /**
+     * null 은 bind 할 수 없으므로 bindNull 로 타입을 알려준다.
+     */
+    private static GenericExecuteSpec bindValues(GenericExecuteSpec spec, String itemName, Integer price, Integer quantity) {
+        spec = itemName == null ? spec.bindNull("itemName", String.class) : spec.bind("itemName", itemName);
+        spec = price == null ? spec.bindNull("price", Integer.class) : spec.bind("price", price);
+        return quantity == null ? spec.bindNull("quantity", Integer.class) : spec.bind("quantity", quantity);
+    }
+
+    /**
+     * JdbcTemplateItemRepositoryV2.searchSql 과 같은 동적 쿼리. 모양마다 한 번만 만든다.
+     */
+    private static String searchSql(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+        Long beforeId = cond.getBeforeId();
+
+        String sql = "select " + COLUMNS + " from item";
+        //동적 쿼리
+        if (StringUtils.hasText(itemName) || maxPrice != null || afterId != null || beforeId != null) {
+            sql += " where";
+        }
+
+        boolean andFlag = false;
+        if (StringUtils.hasText(itemName)) {
+            if (ItemNameGrams.indexable(itemName)) {
+                sql += " id in (select item_id from item_name_gram where gram in (:itemNameGrams)" +
+                        " group by item_id having count(*) = :itemNameGramCount) and";
+            }
+            sql += " item_name like concat('%',:itemName,'%')";
+            andFlag = true;
+        }
+
+        if (maxPrice != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " price <= :maxPrice";
+            andFlag = true;
+        }
+
+        if (afterId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > :afterId";
+            andFlag = true;
+        }
+
+        if (beforeId != null) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id < :beforeId";
+        }
+
+        if (cond.getSize() != null) {
+            sql += cond.backward() ? " order by id desc" : " order by id";
+            sql += " limit :size";
+        }
+        return sql;
+    }
+
+    private static Item toItem(Readable row) {
+        Item item = new Item(row.get("item_name", String.class), row.get("price", Integer.class),
+                row.get("quantity", Integer.class));
+        item.setId(row.get("id", Long.class));
+        return item;
+    }
+}
@@ -0,0 +1,28 @@
+package thespeace.springdb.reactive.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+/**
+ * <p>ItemRepository 의 논블로킹 버전. 값을 바로 반환하지 않고 Mono(0~1건), Flux(0~N건)를 반환하며,
+ * 구독하기 전에는 SQL 을 실행하지 않는다.</p>
+ */
+public interface ReactiveItemRepository {
+
+    Mono<Item> save(Item item);
+
+    /**
+     * 없는 id 면 EmptyResultDataAccessException 으로 끝난다.
+     */
+    Mono<Void> update(Long itemId, ItemUpdateDto updateParam);
+
+    Mono<Item> findById(Long id);
+
+    /**
+     * ItemRepository.findAll 과 같은 조건, 같은 순서. 구독자가 요청한 만큼만 흘려보낸다(backpressure).
+     */
+    Flux<Item> findAll(ItemSearchCond cond);
+}
@@ -0,0 +1,66 @@
+package thespeace.springdb.reactive.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <h2>시퀀스 블록 할당(pooled-lo) - 리액티브</h2>
+ * SequenceIdAllocator 와 같이 시퀀스 값 하나를 블록의 시작(lo)으로 사용해서 {@code lo ~ lo + allocationSize - 1} 을
+ * 메모리에서 나눠준다. 데이터베이스 왕복은 allocationSize 개마다 한 번이다.
+ * <ul>
+ *     <li>이벤트 루프 스레드는 기다리면 안 되므로 락을 사용하지 않는다. 블록마다 AtomicLong 으로 id 를 나눠주고, 블록을 다
+ *         쓰면 시퀀스를 조회해서 새 블록으로 바꾼다.</li>
+ *     <li>여러 요청이 동시에 블록을 다 쓰면 각자 새 블록을 받고, 나중에 받은 블록이 앞의 블록을 대신한다. 대신된 블록의
+ *         남은 id 는 사용되지 않지만(빈 번호) 블록이 모두 다르므로 id 는 겹치지 않는다.</li>
+ * </ul>
+ */
+public class ReactiveSequenceIdAllocator {
+
+    private final DatabaseClient client;
+    private final String sql;
+    private final int allocationSize;
+    private final AtomicReference<Block> block = new AtomicReference<>(new Block(0, 0));
+
+    public ReactiveSequenceIdAllocator(DatabaseClient client, String sequenceName, int allocationSize) {
+        this.client = client;
+        this.sql = "select next value for " + sequenceName;
+        this.allocationSize = allocationSize;
+    }
+
+    public Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            long id = block.get().take();
+            if (id != Block.EXHAUSTED) {
+                return Mono.just(id);
+            }
+            return client.sql(sql)
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(lo -> {
+                        block.set(new Block(lo + 1, lo + allocationSize)); //lo 는 지금 요청이 사용한다.
+                        return lo;
+                    });
+        });
+    }
+
+    private static final class Block {
+
+        static final long EXHAUSTED = -1;
+
+        private final AtomicLong next;
+        private final long limit;
+
+        Block(long next, long limit) {
+            this.next = new AtomicLong(next);
+            this.limit = limit;
+        }
+
+        long take() {
+            long id = next.getAndIncrement();
+            return id < limit ? id : EXHAUSTED;
+        }
+    }
+}
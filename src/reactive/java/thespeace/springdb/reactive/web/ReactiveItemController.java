@@ -0,0 +1,96 @@
+package thespeace.springdb.reactive.web;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.reactive.repository.ReactiveItemRepository;
+import thespeace.springdb.repository.ItemListDto;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+/**
+ * <h2>ItemController 와 같은 경로의 논블로킹 엔드포인트</h2>
+ * <ul>
+ *     <li>화면(타임리프) 대신 JSON 을 반환한다. 등록, 수정은 ItemController 와 같은 폼 파라미터를 받고 같은 위치로
+ *         리다이렉트한다.</li>
+ *     <li>핸들러는 Mono, Flux 를 반환하고 바로 끝난다. SQL 결과를 기다리는 동안 이벤트 루프 스레드는 다른 요청을 처리한다.</li>
+ *     <li>/items/export 는 R2DBC 의 결과를 응답에 한 줄씩 쓴다. 클라이언트가 느리면 쓰기 요청이 줄고, 그만큼 데이터베이스에서도
+ *         덜 읽는다(backpressure).</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/items")
+@RequiredArgsConstructor
+public class ReactiveItemController {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ReactiveItemRepository itemRepository;
+
+    /**
+     * 키셋 페이징은 ItemController 와 같다. 다음 페이지는 마지막 id 를 afterId 로 넘긴다.
+     */
+    @GetMapping
+    public Flux<ItemListDto> items(@ModelAttribute("itemSearch") ItemSearchCond itemSearch) {
+        int size = itemSearch.getSize() == null ? PAGE_SIZE : Math.min(Math.max(itemSearch.getSize(), 1), MAX_PAGE_SIZE);
+        itemSearch.setSize(size);
+        return itemRepository.findAll(itemSearch).map(ItemListDto::from);
+    }
+
+    @GetMapping(value = "/export", produces = "text/csv")
+    public Flux<String> export(@ModelAttribute("itemSearch") ItemSearchCond itemSearch, ServerHttpResponse response) {
+        response.getHeaders().set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"items.csv\"");
+        return Flux.concat(Mono.just("id,itemName,price,quantity\n"),
+                itemRepository.findAll(itemSearch).map(item -> item.getId() + "," + csv(item.getItemName()) + ","
+                        + csv(item.getPrice()) + "," + csv(item.getQuantity()) + "\n"));
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    @GetMapping("/{itemId}")
+    public Mono<ResponseEntity<Item>> item(@PathVariable("itemId") long itemId) {
+        return itemRepository.findById(itemId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/add")
+    public Mono<ResponseEntity<Void>> addItem(@ModelAttribute Item item) {
+        return itemRepository.save(item)
+                .map(savedItem -> redirect(UriComponentsBuilder.fromPath("/items/{itemId}")
+                        .queryParam("status", true)
+                        .buildAndExpand(savedItem.getId())
+                        .toUriString()));
+    }
+
+    /**
+     * 없는 id 면 리포지토리가 EmptyResultDataAccessException 으로 끝나므로 item() 과 같이 404 로 응답한다.
+     */
+    @PostMapping("/{itemId}/edit")
+    public Mono<ResponseEntity<Void>> edit(@PathVariable("itemId") Long itemId, @ModelAttribute ItemUpdateDto updateParam) {
+        return itemRepository.update(itemId, updateParam)
+                .then(Mono.fromSupplier(() -> redirect("/items/" + itemId)))
+                .onErrorResume(EmptyResultDataAccessException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    private static ResponseEntity<Void> redirect(String location) {
+        return ResponseEntity.status(302).header(HttpHeaders.LOCATION, location).build();
+    }
+}
@@ -0,0 +1,173 @@
+package thespeace.springdb.reactive.repository;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>R2dbcItemRepository 테스트</h2>
+ * ItemRepositoryTest 와 같은 시나리오를 r2dbc:h2:mem 데이터베이스에서 StepVerifier 로 확인한다.
+ * StepVerifier 는 Mono, Flux 를 구독하고 흘러나오는 값과 완료(오류) 신호를 순서대로 검증한다.<br>
+ * 테스트마다 reactive-schema.sql 로 테이블과 시퀀스를 다시 만들어서 다른 테스트와 격리한다.
+ */
+class R2dbcItemRepositoryTest {
+
+    static final ConnectionFactory connectionFactory =
+            ConnectionFactories.get("r2dbc:h2:mem:///reactive-test;DB_CLOSE_DELAY=-1");
+
+    R2dbcItemRepository itemRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        new ResourceDatabasePopulator(new ClassPathResource("reactive-schema.sql")).populate(connectionFactory).block();
+        itemRepository = new R2dbcItemRepository(DatabaseClient.create(connectionFactory));
+    }
+
+    @Test
+    void save() {
+        //given
+        Item item = new Item("itemA", 10000, 10);
+
+        //when
+        StepVerifier.create(itemRepository.save(item))
+                .assertNext(savedItem -> assertThat(savedItem.getId()).isNotNull())
+                .verifyComplete();
+
+        //then
+        StepVerifier.create(itemRepository.findById(item.getId()))
+                .expectNext(item)
+                .verifyComplete();
+    }
+
+    /**
+     * 시퀀스 값 하나(블록)에서 id 를 차례로 나눠준다.(pooled-lo)
+     */
+    @Test
+    void saveAllocatesIdsFromOneBlock() {
+        StepVerifier.create(Flux.range(0, 3).concatMap(i -> itemRepository.save(new Item("item" + i, 1000, 1))))
+                .expectNextMatches(item -> item.getId() == 1L)
+                .expectNextMatches(item -> item.getId() == 2L)
+                .expectNextMatches(item -> item.getId() == 3L)
+                .verifyComplete();
+    }
+
+    @Test
+    void updateItem() {
+        //given
+        Item item = save(new Item("item1", 10000, 10))[0];
+
+        //when
+        StepVerifier.create(itemRepository.update(item.getId(), new ItemUpdateDto("item2", 20000, 30)))
+                .verifyComplete();
+
+        //then
+        StepVerifier.create(itemRepository.findById(item.getId()))
+                .assertNext(findItem -> {
+                    assertThat(findItem.getItemName()).isEqualTo("item2");
+                    assertThat(findItem.getPrice()).isEqualTo(20000);
+                    assertThat(findItem.getQuantity()).isEqualTo(30);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void updateMissingItem() {
+        StepVerifier.create(itemRepository.update(999L, new ItemUpdateDto("item2", 20000, 30)))
+                .expectError(EmptyResultDataAccessException.class)
+                .verify();
+    }
+
+    @Test
+    void findMissingItem() {
+        StepVerifier.create(itemRepository.findById(999L))
+                .verifyComplete();
+    }
+
+    @Test
+    void findItems() {
+        //given
+        Item[] items = save(new Item("itemA-1", 10000, 10), new Item("itemA-2", 20000, 20), new Item("itemB-1", 30000, 30));
+        Item item1 = items[0];
+        Item item2 = items[1];
+        Item item3 = items[2];
+
+        //둘 다 없음 검증
+        test(new ItemSearchCond(null, null), item1, item2, item3);
+        test(new ItemSearchCond("", null), item1, item2, item3);
+
+        //itemName 검증 : 3글자 이상이면 item_name_gram 서브쿼리, 미만이면 like 만 사용한다.
+        test(new ItemSearchCond("itemA", null), item1, item2);
+        test(new ItemSearchCond("temA", null), item1, item2);
+        test(new ItemSearchCond("B-", null), item3);
+
+        //maxPrice 검증
+        test(new ItemSearchCond(null, 10000), item1);
+
+        //둘 다 있음 검증
+        test(new ItemSearchCond("itemA", 10000), item1);
+    }
+
+    @Test
+    void findItemsByKeyset() {
+        //given
+        Item[] items = save(new Item("itemA-1", 10000, 10), new Item("itemB-1", 20000, 20), new Item("itemA-2", 30000, 30),
+                new Item("itemA-3", 40000, 40), new Item("itemA-4", 50000, 50));
+        Item item1 = items[0];
+        Item item2 = items[1];
+        Item item3 = items[2];
+        Item item4 = items[3];
+        Item item5 = items[4];
+
+        //다음 페이지
+        test(new ItemSearchCond("itemA", null, null, null, 2), item1, item3);
+        test(new ItemSearchCond("itemA", null, item3.getId(), null, 2), item4, item5);
+        test(new ItemSearchCond("itemA", null, item5.getId(), null, 2));
+
+        //이전 페이지
+        test(new ItemSearchCond("itemA", null, null, item4.getId(), 2), item1, item3);
+        test(new ItemSearchCond(null, 40000, null, item5.getId(), 3), item2, item3, item4);
+    }
+
+    /**
+     * 상품명을 바꾸면 이전 이름으로는 검색되지 않고 새 이름으로 검색되어야 한다.(item_name_gram 갱신)
+     */
+    @Test
+    void findItemsAfterRename() {
+        //given
+        Item item = save(new Item("itemA-1", 10000, 10))[0];
+
+        //when
+        itemRepository.update(item.getId(), new ItemUpdateDto("itemC-1", 10000, 10)).block();
+
+        //then
+        test(new ItemSearchCond("itemA", null));
+        StepVerifier.create(itemRepository.findAll(new ItemSearchCond("emC-1", null)))
+                .expectNextMatches(findItem -> findItem.getId().equals(item.getId()))
+                .verifyComplete();
+    }
+
+    private Item[] save(Item... items) {
+        Flux.fromArray(items).concatMap(itemRepository::save).blockLast();
+        return items;
+    }
+
+    private void test(ItemSearchCond cond, Item... items) {
+        StepVerifier.create(itemRepository.findAll(cond))
+                .expectNextSequence(Arrays.asList(items))
+                .verifyComplete();
+    }
+}
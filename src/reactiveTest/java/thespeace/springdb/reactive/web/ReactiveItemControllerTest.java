@@ -0,0 +1,71 @@
+package thespeace.springdb.reactive.web;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.reactive.repository.R2dbcItemRepository;
+
+/**
+ * <h2>ReactiveItemController 테스트</h2>
+ * WebTestClient.bindToController 는 서버를 띄우지 않고 컨트롤러 하나만 WebFlux 로 호출한다.
+ * 리포지토리는 R2dbcItemRepositoryTest 와 같이 r2dbc:h2:mem 데이터베이스를 사용한다.
+ */
+class ReactiveItemControllerTest {
+
+    static final ConnectionFactory connectionFactory =
+            ConnectionFactories.get("r2dbc:h2:mem:///reactive-controller-test;DB_CLOSE_DELAY=-1");
+
+    R2dbcItemRepository itemRepository;
+    WebTestClient client;
+
+    @BeforeEach
+    void beforeEach() {
+        new ResourceDatabasePopulator(new ClassPathResource("reactive-schema.sql")).populate(connectionFactory).block();
+        itemRepository = new R2dbcItemRepository(DatabaseClient.create(connectionFactory));
+        client = WebTestClient.bindToController(new ReactiveItemController(itemRepository)).build();
+    }
+
+    @Test
+    void editItem() {
+        Item item = itemRepository.save(new Item("itemA", 10000, 10)).block();
+
+        client.post().uri("/items/{itemId}/edit", item.getId())
+                .body(BodyInserters.fromFormData("itemName", "itemB").with("price", "20000").with("quantity", "20"))
+                .exchange()
+                .expectStatus().isFound()
+                .expectHeader().valueEquals(HttpHeaders.LOCATION, "/items/" + item.getId());
+
+        client.get().uri("/items/{itemId}", item.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.itemName").isEqualTo("itemB")
+                .jsonPath("$.price").isEqualTo(20000);
+    }
+
+    /**
+     * 없는 id 를 수정하면 리포지토리의 EmptyResultDataAccessException 을 404 로 바꾼다.
+     */
+    @Test
+    void editMissingItem() {
+        client.post().uri("/items/{itemId}/edit", 999L)
+                .body(BodyInserters.fromFormData("itemName", "itemB").with("price", "20000").with("quantity", "20"))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void findMissingItem() {
+        client.get().uri("/items/{itemId}", 999L)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,20 @@
+-- 리액티브 테스트마다 r2dbc:h2:mem 데이터베이스를 이 스크립트로 초기화한다. src/test/resources/schema.sql 과 같은 테이블.
+drop table if exists item_name_gram CASCADE;
+drop table if exists item CASCADE;
+drop sequence if exists item_seq;
+create sequence item_seq start with 1 increment by 50;
+create table item
+(
+    id bigint not null,
+    item_name varchar(10),
+    price integer,
+    quantity integer,
+    primary key (id)
+);
+create table item_name_gram
+(
+    gram varchar(3) not null,
+    item_id bigint not null,
+    primary key (gram, item_id)
+);
+create index item_name_gram_item_id on item_name_gram (item_id);
@@ -0,0 +1,90 @@
+package thespeace.springdb.cache;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.service.ItemService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>2차 캐시 테스트</h2>
+ * 트랜잭션(영속성 컨텍스트)이 달라도 두 번째 조회부터는 2차 캐시에서 가져오는지 하이버네이트 통계로 확인한다.
+ * 커밋해야 2차 캐시에 들어가므로 @Transactional 롤백 대신 저장한 상품을 직접 지운다.
+ * 다른 테스트가 캐시를 거치지 않도록 캐시 설정은 이 테스트에만 둔다.
+ */
+@SpringBootTest(properties = {
+        "item.cache.enabled=true",
+        "item.cache.entity.max-size=1000",
+        "item.cache.entity.ttl=10m",
+        "item.cache.query.enabled=true",
+        "item.cache.query.max-size=100",
+        "item.cache.query.ttl=1m",
+        "item.cache.statistics=true"
+})
+class ItemSecondLevelCacheTest {
+
+    @Autowired
+    ItemService itemService;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    List<Item> items = new ArrayList<>();
+
+    @AfterEach
+    void afterEach() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                items.forEach(item -> em.remove(em.find(Item.class, item.getId()))));
+    }
+
+    @Test
+    void findByIdFromCache() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        Item item = save(new Item("cached", 10000, 10));
+
+        long hits = statistics.getSecondLevelCacheHitCount();
+        itemService.findById(item.getId());
+        itemService.findById(item.getId());
+
+        assertThat(statistics.getSecondLevelCacheHitCount() - hits).isEqualTo(2);
+    }
+
+    /**
+     * 수정한 상품만 캐시에서 지우고, 다른 상품은 캐시에 남는다.
+     */
+    @Test
+    void updateEvictsOnlyUpdatedItem() {
+        Item item = save(new Item("cached", 10000, 10));
+        Item other = save(new Item("other", 20000, 20));
+        itemService.findById(item.getId());
+        itemService.findById(other.getId());
+
+        itemService.update(item.getId(), new ItemUpdateDto("renamed", 11000, 11));
+
+        assertThat(emf.getCache().contains(Item.class, item.getId())).isFalse();
+        assertThat(emf.getCache().contains(Item.class, other.getId())).isTrue();
+        assertThat(itemService.findById(item.getId())).get().extracting(Item::getItemName).isEqualTo("renamed");
+    }
+
+    private Item save(Item item) {
+        Item saved = itemService.save(item);
+        items.add(saved);
+        return saved;
+    }
+}
@@ -0,0 +1,122 @@
+package thespeace.springdb.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>ReplicaRoutingDataSource 테스트</h2>
+ * primary, 복제본마다 다른 H2 메모리 DB 를 만들고 각 DB 의 node 테이블에 이름을 넣어서, 어느 DB 로 라우팅됐는지 확인한다.<br>
+ * {@link WithApplicationContext} 는 item.datasource.replica.* 를 지정한 컨텍스트에서 SpringDbApplication 의 등록 경로를 확인한다.
+ * 다른 테스트는 복제본 없이 스프링 부트의 데이터소스를 그대로 사용한다.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    ReplicaRoutingDataSource dataSource;
+
+    @AfterEach
+    void afterEach() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplicasInTurn() {
+        dataSource = new ReplicaRoutingDataSource(node("primary"), List.of(node("replica1"), node("replica2")),
+                ReplicaRoutingDataSource.Balance.ROUND_ROBIN, null, 0, 0);
+
+        assertThat(List.of(read(true), read(true), read(true))).containsExactly("replica1", "replica2", "replica1");
+        assertThat(read(false)).isEqualTo("primary");
+        //트랜잭션 밖의 조회도 primary
+        assertThat(new JdbcTemplate(dataSource).queryForObject("select name from node", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    void fallBackToPrimaryWhenReplicasLag() throws InterruptedException {
+        dataSource = new ReplicaRoutingDataSource(node("primary"), List.of(node("replica1")),
+                ReplicaRoutingDataSource.Balance.LEAST_LOADED, "select 5000", 1000, 10);
+        Thread.sleep(200); //첫 지연 검사
+
+        assertThat(read(true)).isEqualTo("primary");
+    }
+
+    /**
+     * 테스트 임베디드 DB(testdb)에 별도의 풀 두 개를 복제본으로 연결한다.
+     */
+    @Nested
+    @SpringBootTest(properties = {
+            "item.datasource.replica.urls=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE,"
+                    + "jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+            "item.datasource.replica.pool-size=4",
+            "item.datasource.replica.balance=round-robin",
+            "item.datasource.replica.max-lag-ms=1000",
+            "item.datasource.replica.lag-check-interval-ms=1000"
+    })
+    class WithApplicationContext {
+
+        @Autowired
+        DataSource applicationDataSource;
+
+        @Autowired
+        PlatformTransactionManager transactionManager;
+
+        @Autowired
+        MeterRegistry meterRegistry;
+
+        @Test
+        void readOnlyTransactionsUseReplicaPools() {
+            assertThat(applicationDataSource).isInstanceOf(ReplicaRoutingDataSource.class);
+            long primaryBefore = usage("item-pool");
+            long replicasBefore = usage("item-pool-replica-0") + usage("item-pool-replica-1");
+
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            transactionTemplate.executeWithoutResult(status ->
+                    new JdbcTemplate(applicationDataSource).queryForObject("select count(*) from item", Long.class));
+
+            assertThat(usage("item-pool-replica-0") + usage("item-pool-replica-1")).isGreaterThan(replicasBefore);
+            assertThat(usage("item-pool")).isEqualTo(primaryBefore);
+        }
+
+        /**
+         * 풀에서 커넥션을 빌렸다가 반납한 횟수(hikaricp.connections.usage)
+         */
+        private long usage(String pool) {
+            Timer timer = meterRegistry.find("hikaricp.connections.usage").tag("pool", pool).timer();
+            return timer == null ? 0 : timer.count();
+        }
+    }
+
+    private String read(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+    }
+
+    private static HikariDataSource node(String name) {
+        HikariDataSource node = new HikariDataSource();
+        node.setPoolName(name);
+        node.setJdbcUrl("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        node.setUsername("sa");
+        new JdbcTemplate(node).execute("create table if not exists node(name varchar(20))");
+        new JdbcTemplate(node).update("delete from node");
+        new JdbcTemplate(node).update("insert into node values (?)", name);
+        return node;
+    }
+}
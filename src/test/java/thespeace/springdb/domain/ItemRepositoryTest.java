@@ -1,10 +1,13 @@
 package thespeace.springdb.domain;
 
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.test.annotation.Commit;
 import org.springframework.transaction.annotation.Transactional;
+import thespeace.springdb.repository.ItemListDto;
 import thespeace.springdb.repository.ItemRepository;
 import thespeace.springdb.repository.ItemSearchCond;
 import thespeace.springdb.repository.ItemUpdateDto;
+import thespeace.springdb.repository.memory.ColumnarItemRepository;
 import thespeace.springdb.repository.memory.MemoryItemRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -12,8 +15,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * <h2>테스트 - 데이터베이스 분리</h2>
@@ -76,6 +81,9 @@ class ItemRepositoryTest {
         if (itemRepository instanceof MemoryItemRepository) {
             ((MemoryItemRepository) itemRepository).clearStore();
         }
+        if (itemRepository instanceof ColumnarItemRepository) {
+            ((ColumnarItemRepository) itemRepository).clearStore();
+        }
 
         //트랜잭션 롤백
 //        transactionManager.rollback(status);
@@ -94,6 +102,25 @@ class ItemRepositoryTest {
         assertThat(findItem).isEqualTo(savedItem);
     }
 
+    @Test
+    void saveAll() {
+        //given
+        Item item1 = new Item("itemA-1", 10000, 10);
+        Item item2 = new Item("itemA-2", 20000, 20);
+        Item item3 = new Item("itemB-1", null, null); //save 와 같이 가격, 수량이 없어도 저장한다.
+
+        //when
+        List<Item> savedItems = itemRepository.saveAll(List.of(item1, item2, item3));
+
+        //then
+        assertThat(savedItems).containsExactly(item1, item2, item3);
+        assertThat(savedItems).extracting(Item::getId).doesNotContainNull().doesNotHaveDuplicates();
+        test("itemA", null, item1, item2);
+        Item findItem3 = itemRepository.findById(item3.getId()).orElseThrow();
+        assertThat(findItem3.getPrice()).isNull();
+        assertThat(findItem3.getQuantity()).isNull();
+    }
+
     @Test
     void updateItem() {
         //given
@@ -112,6 +139,17 @@ class ItemRepositoryTest {
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
 
+    @Test
+    void updateMissingItem() {
+        //given
+        Item item = itemRepository.save(new Item("item1", 10000, 10));
+
+        //when, then : 없는 id 는 예외로 알리고 다른 상품은 그대로 둔다.
+        assertThatThrownBy(() -> itemRepository.update(Long.MAX_VALUE, new ItemUpdateDto("item1", 20000, 30)))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+        assertThat(itemRepository.findAll(new ItemSearchCond("item1", null))).containsExactly(item);
+    }
+
     @Test
     void findItems() {
         //given
@@ -139,6 +177,80 @@ class ItemRepositoryTest {
         test("itemA", 10000, item1);
     }
 
+    @Test
+    void findItemsByKeyset() {
+        //given
+        Item item1 = new Item("itemA-1", 10000, 10);
+        Item item2 = new Item("itemB-1", 20000, 20);
+        Item item3 = new Item("itemA-2", 30000, 30);
+        Item item4 = new Item("itemA-3", 40000, 40);
+        Item item5 = new Item("itemA-4", 50000, 50);
+        itemRepository.saveAll(List.of(item1, item2, item3, item4, item5));
+
+        //다음 페이지
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null, null, null, 2))).containsExactly(item1, item3);
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null, item3.getId(), null, 2))).containsExactly(item4, item5);
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null, item5.getId(), null, 2))).isEmpty();
+
+        //이전 페이지
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null, null, item4.getId(), 2))).containsExactly(item1, item3);
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 40000, null, item5.getId(), 3))).containsExactly(item2, item3, item4);
+    }
+
+    /**
+     * 상품명을 바꾸면 이전 이름으로는 검색되지 않고 새 이름으로 검색되어야 한다.(item_name_gram 갱신)
+     */
+    @Test
+    void findItemsAfterRename() {
+        //given
+        Item item = itemRepository.save(new Item("itemA-1", 10000, 10));
+
+        //when
+        itemRepository.update(item.getId(), new ItemUpdateDto("itemC-1", 10000, 10));
+
+        //then
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null))).isEmpty();
+        assertThat(itemRepository.findAll(new ItemSearchCond("emC-1", null)))
+                .extracting(Item::getId).containsExactly(item.getId());
+    }
+
+    /**
+     * 목록 화면용 조회는 findAll 과 같은 조건, 같은 순서로 필요한 컬럼만 담아서 반환해야 한다.
+     */
+    @Test
+    void findItemList() {
+        //given
+        Item item1 = new Item("itemA-1", 10000, 10);
+        Item item2 = new Item("itemB-1", 20000, 20);
+        Item item3 = new Item("itemA-2", 30000, 30);
+        Item item4 = new Item("itemA-3", 40000, 40);
+        itemRepository.saveAll(List.of(item1, item2, item3, item4));
+
+        //then
+        assertThat(itemRepository.findList(new ItemSearchCond("itemA", 30000)))
+                .containsExactly(ItemListDto.from(item1), ItemListDto.from(item3));
+        assertThat(itemRepository.findList(new ItemSearchCond("itemA", null, null, item4.getId(), 1)))
+                .containsExactly(new ItemListDto(item3.getId(), "itemA-2", 30000, 30));
+    }
+
+    @Test
+    void streamItems() {
+        //given
+        Item item1 = new Item("itemA-1", 10000, 10);
+        Item item2 = new Item("itemA-2", 20000, 20);
+        Item item3 = new Item("itemB-1", 30000, 30);
+        itemRepository.saveAll(List.of(item1, item2, item3));
+
+        //when
+        List<Item> result;
+        try (Stream<Item> items = itemRepository.streamAll(new ItemSearchCond("itemA", null))) {
+            result = items.toList();
+        }
+
+        //then
+        assertThat(result).containsExactly(item1, item2);
+    }
+
     void test(String itemName, Integer maxPrice, Item... items) {
         List<Item> result = itemRepository.findAll(new ItemSearchCond(itemName, maxPrice));
         assertThat(result).containsExactly(items);
@@ -0,0 +1,47 @@
+package thespeace.springdb.domain;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>생성된 ItemRowMapper 테스트</h2>
+ * 애노테이션 프로세서가 만든 ItemRowMapper 가 BeanPropertyRowMapper 와 같은 결과를 내는지(null 포함) 확인한다.
+ */
+class ItemRowMapperTest {
+
+    JdbcTemplate template = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:rowmapper;DB_CLOSE_DELAY=-1"));
+
+    @BeforeEach
+    void beforeEach() {
+        template.execute("create table item (id bigint not null, item_name varchar(10), price integer, quantity integer, primary key (id))");
+        template.update("insert into item values (1, 'itemA', 10000, 10)");
+        template.update("insert into item values (2, null, null, 20)");
+    }
+
+    @AfterEach
+    void afterEach() {
+        template.execute("drop table item");
+    }
+
+    @Test
+    void sameAsBeanPropertyRowMapper() {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item order by id";
+
+        List<Item> generated = template.query(sql, ItemRowMapper.INSTANCE);
+        List<Item> reflective = template.query(sql, BeanPropertyRowMapper.newInstance(Item.class));
+
+        assertThat(ItemRowMapper.COLUMNS).isEqualTo("id, item_name, price, quantity");
+        assertThat(generated).isEqualTo(reflective);
+        assertThat(generated.get(1).getItemName()).isNull();
+        assertThat(generated.get(1).getPrice()).isNull();
+        assertThat(generated.get(1).getQuantity()).isEqualTo(20);
+    }
+}
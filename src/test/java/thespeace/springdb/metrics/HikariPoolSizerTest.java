@@ -0,0 +1,66 @@
+package thespeace.springdb.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>HikariPoolSizer 테스트</h2>
+ * 다른 테스트에서 크기 조절 스케줄러가 돌지 않도록, 이 테스트의 컨텍스트에서만 item.pool.adaptive.enabled 를 켠다.
+ * 조절 범위(2..8, growStep 2)는 test 프로필 설정을 사용하고, 주기만 짧게 줄인다.<br>
+ * 풀의 커넥션을 모두 빌려 두고 한 스레드를 더 기다리게 해서, 다음 주기에 최대 크기가 growStep 만큼 늘어나고
+ * 기다리던 스레드가 connection-timeout(30초)이나 다른 요청 없이 커넥션을 받는지 확인한다.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "item.pool.adaptive.enabled=true",
+        "item.pool.adaptive.interval-ms=100"
+})
+class HikariPoolSizerTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void growWhenThreadsWaitForConnection() throws Exception {
+        HikariDataSource pool = dataSource.unwrap(HikariDataSource.class);
+        assertThat(pool.getHikariConfigMXBean().getMaximumPoolSize()).isEqualTo(2);
+
+        List<Connection> borrowed = new ArrayList<>();
+        try {
+            borrowed.add(pool.getConnection());
+            borrowed.add(pool.getConnection());
+            CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.getConnection();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            //풀이 늘어나면 기다리던 스레드가 커넥션을 받는다.
+            borrowed.add(waiting.get(5, TimeUnit.SECONDS));
+            //기다린 시간이 다음 주기의 평균 대기 시간에 들어가므로 한 번 더 늘어날 수 있다.
+            assertThat(pool.getHikariConfigMXBean().getMaximumPoolSize()).isBetween(4, 8);
+            assertThat(meterRegistry.get("item.pool.resize").tag("direction", "grow").counter().count()).isGreaterThanOrEqualTo(1);
+        } finally {
+            for (Connection connection : borrowed) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package thespeace.springdb.repository.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>MappedLogItemRepository 테스트</h2>
+ * 저장소를 닫지 않고(프로세스 비정상 종료) 다시 열거나, 로그 끝에 잘린 레코드가 있어도 마지막 상태가 복구되는지 검증한다.
+ * 쓰기 지연 시간(H2 TCP 와 비교)과 재시작 시간은 MappedLogBenchmark 로 측정한다.
+ */
+class MappedLogItemRepositoryTest {
+
+    private static final long SNAPSHOT_THRESHOLD = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverWithoutClose() {
+        MappedLogItemRepository repository = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, false);
+        Item itemA = repository.save(new Item("itemA", 10000, 10));
+        Item itemB = repository.save(new Item("상품B", 20000, 20));
+        repository.update(itemA.getId(), new ItemUpdateDto("itemA-2", null, 30));
+
+        MappedLogItemRepository recovered = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, false);
+
+        Item findItemA = recovered.findById(itemA.getId()).orElseThrow();
+        assertThat(findItemA.getItemName()).isEqualTo("itemA-2");
+        assertThat(findItemA.getPrice()).isNull();
+        assertThat(findItemA.getQuantity()).isEqualTo(30);
+        assertThat(recovered.findById(itemB.getId())).contains(itemB);
+        assertThat(recovered.save(new Item("itemC", 1, 1)).getId()).isEqualTo(itemB.getId() + 1);
+        recovered.close();
+    }
+
+    @Test
+    void recoverSnapshotAndLogTail() {
+        long threshold = 32 * 1024;
+        MappedLogItemRepository repository = new MappedLogItemRepository(directory, threshold, false);
+        for (int i = 0; i < 5_000; i++) { //스냅샷이 여러 번 만들어질 만큼 저장
+            repository.save(new Item("item" + i, i, i));
+        }
+
+        MappedLogItemRepository recovered = new MappedLogItemRepository(directory, threshold, false);
+
+        assertThat(recovered.findAll(new ItemSearchCond())).hasSize(5_000);
+        assertThat(recovered.findAll(new ItemSearchCond("item4999", 4999))).extracting(Item::getId).containsExactly(5_000L);
+        recovered.close();
+    }
+
+    @Test
+    void ignoreTornRecord() throws Exception {
+        MappedLogItemRepository repository = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, true);
+        Item item = repository.save(new Item("itemA", 10000, 10));
+        repository.close();
+
+        //길이만 기록되고 내용은 쓰다가 중단된 레코드
+        try (FileChannel channel = FileChannel.open(directory.resolve(MappedLogItemRepository.LOG_FILE), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(40).putInt(7).flip(), 0);
+        }
+
+        MappedLogItemRepository recovered = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, true);
+        assertThat(recovered.findAll(new ItemSearchCond())).containsExactly(item);
+
+        Item itemB = recovered.save(new Item("itemB", 20000, 20));
+        MappedLogItemRepository recoveredAgain = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, true);
+        assertThat(recoveredAgain.findAll(new ItemSearchCond())).containsExactly(item, itemB);
+        recoveredAgain.close();
+    }
+
+    @Test
+    void discardRecordsAfterInvalidRecord() throws Exception {
+        MappedLogItemRepository repository = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, true);
+        repository.save(new Item("item1", 1, 1));
+        repository.save(new Item("item2", 2, 2));
+        repository.save(new Item("item3", 3, 3));
+
+        //첫 번째 레코드의 CRC 를 깨뜨린다. 뒤의 레코드는 멀쩡하지만 첫 번째 레코드 이후는 모두 버려져야 한다.
+        try (FileChannel channel = FileChannel.open(directory.resolve(MappedLogItemRepository.LOG_FILE), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0).flip(), 4);
+        }
+
+        MappedLogItemRepository recovered = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, true);
+        assertThat(recovered.findAll(new ItemSearchCond())).isEmpty();
+
+        //같은 길이의 레코드를 다시 쓰면 예전 item2 레코드 바로 앞에서 끝난다. 버리지 않았다면 다음 복구에서 되살아난다.
+        Item itemA = recovered.save(new Item("itemA", 10, 10));
+        MappedLogItemRepository recoveredAgain = new MappedLogItemRepository(directory, SNAPSHOT_THRESHOLD, true);
+        assertThat(recoveredAgain.findAll(new ItemSearchCond())).containsExactly(itemA);
+        recoveredAgain.close();
+    }
+}
@@ -0,0 +1,43 @@
+package thespeace.springdb.repository.id;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>SequenceIdAllocator 테스트</h2>
+ * 시퀀스 값 하나로 allocationSize 개의 id 를 나눠주고, 여러 스레드에서 받아도 중복되지 않는지 확인한다.
+ */
+class SequenceIdAllocatorTest {
+
+    DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:id;DB_CLOSE_DELAY=-1", "sa", "");
+    JdbcTemplate template = new JdbcTemplate(dataSource);
+
+    @Test
+    void allocateBlocks() {
+        template.execute("create sequence block_seq start with 1 increment by 50");
+        SequenceIdAllocator allocator = new SequenceIdAllocator(dataSource, "block_seq", 50);
+
+        assertThat(IntStream.range(0, 120).mapToLong(i -> allocator.nextId()))
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, 120).asLongStream().boxed().toList());
+        //120개를 받는 동안 시퀀스는 3번만 호출됐다.
+        assertThat(template.queryForObject("select next value for block_seq", Long.class)).isEqualTo(151L);
+    }
+
+    @Test
+    void concurrentAllocationHasNoDuplicates() {
+        template.execute("create sequence concurrent_seq start with 1 increment by 50");
+        SequenceIdAllocator allocator = new SequenceIdAllocator(dataSource, "concurrent_seq", 50);
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 10_000).parallel().forEach(i -> ids.add(allocator.nextId()));
+
+        assertThat(ids).hasSize(10_000);
+    }
+}
@@ -0,0 +1,81 @@
+package thespeace.springdb.repository.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * <h2>ColumnarItemRepository 테스트</h2>
+ * 검색 결과가 MemoryItemRepository 와 같은지 확인한다.
+ * 두 저장소의 메모리 사용량과 검색 처리량은 ItemRepositoryBenchmark(backend=memory, columnar)로 비교한다.
+ */
+class ColumnarItemRepositoryTest {
+
+    ColumnarItemRepository columnarRepository = new ColumnarItemRepository();
+    MemoryItemRepository memoryRepository = new MemoryItemRepository();
+
+    @AfterEach
+    void afterEach() {
+        columnarRepository.clearStore();
+        memoryRepository.clearStore();
+        memoryRepository.close();
+    }
+
+    @Test
+    void rejectNullMarkerValue() {
+        Item item = columnarRepository.save(new Item("itemA-1", 10000, 10));
+
+        assertThatThrownBy(() -> columnarRepository.save(new Item("itemA-2", Integer.MIN_VALUE, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> columnarRepository.saveAll(List.of(new Item("itemA-3", 10000, 10),
+                new Item("itemA-4", 10000, Integer.MIN_VALUE))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> columnarRepository.update(item.getId(), new ItemUpdateDto("itemA-1", Integer.MIN_VALUE, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(columnarRepository.findAll(new ItemSearchCond(null, null))).containsExactly(item);
+    }
+
+    @Test
+    void findItems() {
+        Item item1 = columnarRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = columnarRepository.save(new Item("itemA-2", 20000, 20));
+        Item item3 = columnarRepository.save(new Item("itemB-1", 30000, 30));
+
+        assertThat(columnarRepository.findAll(new ItemSearchCond(null, null))).containsExactly(item1, item2, item3);
+        assertThat(columnarRepository.findAll(new ItemSearchCond("temA", null))).containsExactly(item1, item2);
+        assertThat(columnarRepository.findAll(new ItemSearchCond(null, 10000))).containsExactly(item1);
+        assertThat(columnarRepository.findAll(new ItemSearchCond("itemA", 10000))).containsExactly(item1);
+
+        columnarRepository.update(item2.getId(), new ItemUpdateDto("상품B", null, 5));
+        Item findItem = columnarRepository.findById(item2.getId()).orElseThrow();
+        assertThat(findItem.getItemName()).isEqualTo("상품B");
+        assertThat(findItem.getPrice()).isNull();
+        assertThat(findItem.getQuantity()).isEqualTo(5);
+        assertThat(columnarRepository.findAll(new ItemSearchCond(null, 100000))).containsExactly(item1, item3);
+    }
+
+    @Test
+    void sameResultsAsMemoryRepository() {
+        for (int i = 0; i < 5_000; i++) {
+            Item item = new Item(i % 7 == 0 ? null : "item" + (i % 1000), i % 11 == 0 ? null : i % 100_000, i % 100);
+            memoryRepository.save(new Item(item.getItemName(), item.getPrice(), item.getQuantity()));
+            columnarRepository.save(item);
+        }
+
+        //2글자 상품명은 MemoryItemRepository 도 인덱스 없이 전체를 스캔한다.
+        for (ItemSearchCond cond : List.of(new ItemSearchCond(), new ItemSearchCond("99", null),
+                new ItemSearchCond("item12", null), new ItemSearchCond(null, 2500), new ItemSearchCond("item1", 2500))) {
+            assertThat(columnarRepository.findAll(cond))
+                    .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                    .containsExactlyElementsOf(memoryRepository.findAll(cond));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package thespeace.springdb.repository.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>MemoryItemRepository 동시성 테스트</h2>
+ * 여러 스레드에서 동시에 저장, 수정, 조회를 수행해도 id 가 중복되거나 데이터가 유실되지 않는지 검증한다.
+ * 스레드 수에 따른 처리량은 ItemRepositoryBenchmark 의 mixedReadWrite 로 측정한다.
+ */
+class MemoryItemRepositoryConcurrencyTest {
+
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+
+    @AfterEach
+    void afterEach() {
+        itemRepository.clearStore();
+        itemRepository.close();
+    }
+
+    @Test
+    void concurrentSaveHasNoDuplicateIds() throws Exception {
+        int threadCount = 8;
+        List<Item> saved = runConcurrently(threadCount, () -> {
+            List<Item> items = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                items.add(itemRepository.save(new Item("item", 1000, 1)));
+            }
+            return items;
+        });
+
+        Set<Long> ids = new HashSet<>();
+        saved.forEach(item -> ids.add(item.getId()));
+        assertThat(ids).hasSize(threadCount * OPERATIONS_PER_THREAD);
+        assertThat(itemRepository.findAll(new ItemSearchCond())).hasSize(threadCount * OPERATIONS_PER_THREAD);
+    }
+
+    @Test
+    void parallelScanKeepsInsertionOrder() throws Exception {
+        try (MemoryItemRepository parallelRepository = new MemoryItemRepository(1_000, 4, 2)) {
+            for (int i = 0; i < 50_000; i++) {
+                parallelRepository.save(new Item("item" + i, i, 1));
+            }
+            List<Item> expected = parallelRepository.findAll(new ItemSearchCond("9", null));
+
+            //병렬 스캔 자리(2개)보다 많은 요청이 동시에 들어와도 모두 같은 순서의 결과를 받아야 한다.
+            List<Item> results = runConcurrently(8, () -> parallelRepository.findAll(new ItemSearchCond("9", null)));
+            for (int i = 0; i < 8; i++) {
+                assertThat(results.subList(i * expected.size(), (i + 1) * expected.size()))
+                        .containsExactlyElementsOf(expected);
+            }
+            assertThat(expected).isSortedAccordingTo((a, b) -> Long.compare(a.getId(), b.getId()));
+        }
+    }
+
+    @Test
+    void readersNeverSeeHalfAppliedUpdate() throws Exception {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(itemRepository.save(new Item("item" + i, 0, 0)));
+        }
+        Item returned = itemRepository.findById(items.get(0).getId()).orElseThrow();
+
+        //수정할 때마다 price 와 quantity 를 같은 값으로 바꾸므로, 어떤 스냅샷에서든 두 값은 같아야 한다.
+        List<Item> seen = runConcurrently(4, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<Item> mismatched = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                if (random.nextInt(4) == 0) {
+                    int value = random.nextInt(100_000);
+                    Item target = items.get(random.nextInt(items.size()));
+                    itemRepository.update(target.getId(), new ItemUpdateDto(target.getItemName(), value, value));
+                } else {
+                    itemRepository.findAll(new ItemSearchCond(null, random.nextInt(100_000))).stream()
+                            .filter(item -> !item.getPrice().equals(item.getQuantity()))
+                            .forEach(mismatched::add);
+                }
+            }
+            return mismatched;
+        });
+
+        assertThat(seen).isEmpty();
+        assertThat(returned.getPrice()).isZero(); //이미 돌려준 객체는 이후 수정에 영향을 받지 않는다.
+        assertThat(itemRepository.findAll(new ItemSearchCond())).hasSize(items.size());
+    }
+
+    @Test
+    void concurrentUpdatesOfSameItemKeepIndexConsistent() throws Exception {
+        Item item = itemRepository.save(new Item("item", 0, 0));
+
+        //같은 상품을 동시에 수정하면서 회수도 함께 일어난다. 마지막 버전의 가격, 상품명은 인덱스에 남아 있어야 한다.
+        runConcurrently(4, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                int value = random.nextInt(1000);
+                itemRepository.update(item.getId(), new ItemUpdateDto("item" + value, value, value));
+            }
+            return List.of();
+        });
+
+        Item last = itemRepository.findById(item.getId()).orElseThrow();
+        assertThat(last.getQuantity()).isEqualTo(last.getPrice());
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, last.getPrice()))).containsExactly(last);
+        assertThat(itemRepository.findAll(new ItemSearchCond(last.getItemName(), null))).containsExactly(last);
+    }
+
+    private List<Item> runConcurrently(int threadCount, Callable<List<Item>> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch ready = new CountDownLatch(threadCount);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Item>>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    start.await();
+                    return task.call();
+                }));
+            }
+            ready.await();
+            start.countDown();
+
+            List<Item> result = new ArrayList<>();
+            for (Future<List<Item>> future : futures) {
+                result.addAll(future.get(1, TimeUnit.MINUTES));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package thespeace.springdb.repository.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import thespeace.springdb.domain.Item;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.ItemUpdateDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>MemoryItemRepository 키셋 페이징 테스트</h2>
+ * 인덱스를 쓰는 검색(상품명 3글자 이상, maxPrice)과 전체 스캔 검색 모두, 페이지를 이어 붙인 결과가 size 없이 검색한
+ * 결과와 같은지 확인한다.
+ */
+class MemoryItemRepositoryTest {
+
+    private static final int PAGE_SIZE = 7;
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+
+    @AfterEach
+    void afterEach() {
+        itemRepository.clearStore();
+        itemRepository.close();
+    }
+
+    @Test
+    void keysetPagesMatchUnpagedSearch() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            items.add(itemRepository.save(new Item("item" + (i % 100), i % 1000, i % 10)));
+        }
+        //이전 값이 인덱스에 남아 있는 상품도 섞는다.
+        for (int i = 0; i < items.size(); i += 13) {
+            itemRepository.update(items.get(i).getId(), new ItemUpdateDto("moved" + i, 5000 + i, 0));
+        }
+
+        for (ItemSearchCond cond : List.of(new ItemSearchCond("item12", null), new ItemSearchCond(null, 30),
+                new ItemSearchCond("item1", 500), new ItemSearchCond("moved", null), new ItemSearchCond("12", null))) {
+            List<Item> expected = itemRepository.findAll(cond);
+
+            assertThat(forwardPages(cond)).containsExactlyElementsOf(expected);
+            assertThat(backwardPages(cond)).containsExactlyElementsOf(expected);
+        }
+    }
+
+    private List<Item> forwardPages(ItemSearchCond cond) {
+        List<Item> result = new ArrayList<>();
+        Long afterId = null;
+        while (true) {
+            List<Item> page = itemRepository.findAll(
+                    new ItemSearchCond(cond.getItemName(), cond.getMaxPrice(), afterId, null, PAGE_SIZE));
+            result.addAll(page);
+            if (page.size() < PAGE_SIZE) {
+                return result;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private List<Item> backwardPages(ItemSearchCond cond) {
+        List<Item> result = new ArrayList<>();
+        Long beforeId = Long.MAX_VALUE;
+        while (true) {
+            List<Item> page = itemRepository.findAll(
+                    new ItemSearchCond(cond.getItemName(), cond.getMaxPrice(), null, beforeId, PAGE_SIZE));
+            result.addAll(0, page);
+            if (page.size() < PAGE_SIZE) {
+                return result;
+            }
+            beforeId = page.get(0).getId();
+        }
+    }
+}
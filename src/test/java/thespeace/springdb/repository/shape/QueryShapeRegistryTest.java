@@ -0,0 +1,71 @@
+package thespeace.springdb.repository.shape;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import thespeace.springdb.repository.ItemSearchCond;
+import thespeace.springdb.repository.gram.ItemNameGrams;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>QueryShapeRegistry 테스트</h2>
+ * 같은 모양은 값이 달라도 한 번만 만들고, 모양별 사용 횟수가 메트릭으로 나가는지 확인한다.
+ */
+class QueryShapeRegistryTest {
+
+    @Test
+    void compileOncePerShape() {
+        AtomicInteger compiles = new AtomicInteger();
+        QueryShapeRegistry<String> registry = new QueryShapeRegistry<>("test", cond -> {
+            compiles.incrementAndGet();
+            return "query-" + cond.shape();
+        });
+
+        assertThat(registry.get(new ItemSearchCond("itemA", null))).isEqualTo("query-name");
+        assertThat(registry.get(new ItemSearchCond("itemB", null))).isEqualTo("query-name");
+        assertThat(registry.get(new ItemSearchCond("itemA", 10000))).isEqualTo("query-both");
+        registry.get(new ItemSearchCond(null, null, 10L, null, 20));
+        registry.get(new ItemSearchCond(null, null, null, 10L, 20));
+
+        assertThat(compiles).hasValue(4);
+        assertThat(registry.hits())
+                .containsEntry("name", 2L)
+                .containsEntry("both", 1L)
+                .containsEntry("none+after+page", 1L)
+                .containsEntry("none+before+page", 1L);
+    }
+
+    @Test
+    void shortNameIsSeparateShape() {
+        AtomicInteger compiles = new AtomicInteger();
+        QueryShapeRegistry<String> registry = new QueryShapeRegistry<>("test", cond -> {
+            compiles.incrementAndGet();
+            return ItemNameGrams.indexable(cond.getItemName()) ? "gram" : "scan";
+        });
+
+        assertThat(registry.get(new ItemSearchCond("itemA", null))).isEqualTo("gram");
+        assertThat(registry.get(new ItemSearchCond("it", null))).isEqualTo("scan"); //n-gram 을 만들 수 없다.
+        assertThat(registry.get(new ItemSearchCond("itemB", null))).isEqualTo("gram");
+
+        assertThat(compiles).hasValue(2);
+        assertThat(registry.hits())
+                .containsEntry("name", 2L)
+                .containsEntry("name+scan", 1L);
+    }
+
+    @Test
+    void hitsAsMetrics() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        QueryShapeRegistry<String> registry = new QueryShapeRegistry<>("test", ItemSearchCond::shape);
+
+        registry.get(new ItemSearchCond("itemA", null));
+        registry.bindTo(meterRegistry); //연결하기 전에 만들어진 모양도 등록된다.
+        registry.get(new ItemSearchCond("itemB", null));
+        registry.get(new ItemSearchCond(null, 10000));
+
+        assertThat(meterRegistry.get("item.query.shape").tag("shape", "name").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("item.query.shape").tag("shape", "price").functionCounter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,220 @@
+package thespeace.springdb.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <h2>ItemController 부하 테스트</h2>
+ * 컨트롤러 - 서비스 - 리포지토리 - 임베디드 H2 전체를 실제 HTTP 로 호출해서, 리포지토리나 설정을 바꿨을 때
+ * 사용자가 느끼는 지연 시간이 어떻게 달라지는지 확인한다.
+ * <ul>
+ *     <li>{@code @Tag("load")} : 일반 test 작업에서는 제외하고 {@code ./gradlew loadTest} 로만 실행한다.</li>
+ *     <li>상품을 미리 저장한 뒤, 정해진 비율(mix)로 검색, 상세, 등록, 수정 요청을 여러 스레드에서 보낸다.</li>
+ *     <li>워밍업 구간의 요청은 버리고, 측정 구간의 처리량과 p50, p99, p999 지연 시간을 엔드포인트별로 로그에 남긴다.</li>
+ *     <li>test 프로필의 SQL 로그 레벨(debug, trace)은 info 로 올려서 로그 출력이 측정에 섞이지 않게 한다.</li>
+ * </ul>
+ *
+ * <h2>설정(시스템 프로퍼티, gradle 에서는 -Pload.threads=16 처럼 넘긴다)</h2>
+ * <ul>
+ *     <li>load.threads : 동시에 요청을 보내는 스레드 수 (기본 8)</li>
+ *     <li>load.mix : 엔드포인트별 비율 (기본 search=50,view=30,add=10,edit=10)</li>
+ *     <li>load.warmup-seconds, load.duration-seconds : 워밍업, 측정 시간 (기본 3초, 10초)</li>
+ *     <li>load.seed-items : 미리 저장할 상품 수 (기본 1000)</li>
+ * </ul>
+ *
+ * <h2>플랫폼 스레드와 가상 스레드 비교</h2>
+ * {@code -PvirtualThreads=true} 로 실행하면 서버가 요청을 가상 스레드로 처리한다(spring.threads.virtual.enabled).
+ * 같은 load.threads 로 두 번 실행해서 결과를 비교한다.
+ * <ul>
+ *     <li>플랫폼 스레드 모드는 톰캣 스레드 수(기본 200)만큼만 동시에 처리하므로, load.threads 를 그보다 크게 잡아야 차이가 보인다.</li>
+ *     <li>가상 스레드 모드에서는 고정(pinning)된 횟수와 시간을 경로(path)별로 함께 출력한다. 0 이 아니면 해당 경로가 캐리어
+ *         스레드를 붙잡고 있다는 뜻이다. 스택은 VirtualThreadPinningMonitor 의 경고 로그에 남는다.</li>
+ * </ul>
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        //test 프로필의 SQL, 바인딩 로그(debug, trace)를 끈다. 켜 두면 지연 시간 대부분이 로그 출력 시간이 된다.
+        "logging.level.org.springframework.jdbc=info",
+        "logging.level.thespeace.springdb.repository.mybatis=info",
+        "logging.level.org.hibernate.SQL=info",
+        "logging.level.org.hibernate.orm.jdbc.bind=info"
+})
+class ItemControllerLoadTest {
+
+    enum Endpoint {SEARCH, VIEW, ADD, EDIT}
+
+    @LocalServerPort
+    int port;
+
+    @Value("${spring.threads.virtual.enabled}")
+    boolean virtualThreads;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final List<Long> itemIds = new ArrayList<>(); //미리 저장한 상품 id, 부하를 주는 동안에는 읽기만 한다.
+
+    @Test
+    void itemEndpoints() throws Exception {
+        int threads = Integer.getInteger("load.threads", 8);
+        Map<Endpoint, Integer> mix = parseMix(System.getProperty("load.mix", "search=50,view=30,add=10,edit=10"));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("load.warmup-seconds", 3));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("load.duration-seconds", 10));
+        int seedItems = Integer.getInteger("load.seed-items", 1000);
+
+        for (int i = 0; i < seedItems; i++) {
+            //redirect:/items/{itemId}?status=true
+            String location = client.send(request(Endpoint.ADD, i), HttpResponse.BodyHandlers.discarding())
+                    .headers().firstValue("Location").orElseThrow();
+            String path = URI.create(location).getPath();
+            itemIds.add(Long.parseLong(path.substring(path.lastIndexOf('/') + 1)));
+        }
+
+        long measureStart = System.nanoTime() + warmupNanos;
+        long measureEnd = measureStart + durationNanos;
+        AtomicLong errors = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Map<Endpoint, Latencies>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                Map<Endpoint, Latencies> recorded = new EnumMap<>(Endpoint.class);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (long now = System.nanoTime(); now < measureEnd; now = System.nanoTime()) {
+                    Endpoint endpoint = pick(mix, random.nextInt(100));
+                    long start = System.nanoTime();
+                    int status = client.send(request(endpoint, random.nextInt(1_000_000)),
+                            HttpResponse.BodyHandlers.ofString()).statusCode();
+                    long elapsed = System.nanoTime() - start;
+                    if (start < measureStart) {
+                        continue; //워밍업
+                    }
+                    if (status >= 400) {
+                        errors.incrementAndGet();
+                    }
+                    recorded.computeIfAbsent(endpoint, e -> new Latencies()).add(elapsed);
+                }
+                return recorded;
+            }));
+        }
+
+        Map<Endpoint, Latencies> total = new EnumMap<>(Endpoint.class);
+        for (Future<Map<Endpoint, Latencies>> future : futures) {
+            future.get().forEach((endpoint, latencies) ->
+                    total.computeIfAbsent(endpoint, e -> new Latencies()).addAll(latencies));
+        }
+        executor.shutdown();
+
+        double seconds = durationNanos / 1_000_000_000.0;
+        log.info("mode={}, threads={}, mix={}, duration={}s, errors={}", virtualThreads ? "virtual" : "platform",
+                threads, mix, seconds, errors.get());
+        total.forEach((endpoint, latencies) -> log.info("{} count={}, req/s={}, p50={}ms, p99={}ms, p999={}ms",
+                endpoint, latencies.size, String.format("%,.0f", latencies.size / seconds),
+                millis(latencies.percentile(0.50)), millis(latencies.percentile(0.99)), millis(latencies.percentile(0.999))));
+        meterRegistry.find("item.virtual-thread.pinned").timers().forEach(pinned -> log.info("pinned path={} count={}, total={}ms",
+                pinned.getId().getTag("path"), pinned.count(), String.format("%.2f", pinned.totalTime(TimeUnit.MILLISECONDS))));
+
+        assertThat(errors.get()).isZero();
+    }
+
+    private HttpRequest request(Endpoint endpoint, int n) {
+        return switch (endpoint) {
+            case SEARCH -> get("/items?itemName=item" + n % 100 + (n % 2 == 0 ? "&maxPrice=" + n % 100_000 : ""));
+            case VIEW -> get("/items/" + randomItemId(n));
+            case ADD -> post("/items/add", "itemName=item" + n % 1000 + "&price=" + n % 100_000 + "&quantity=" + n % 100);
+            case EDIT -> post("/items/" + randomItemId(n) + "/edit",
+                    "itemName=item" + n % 1000 + "&price=" + n % 100_000 + "&quantity=" + n % 100);
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+    }
+
+    private HttpRequest post(String path, String form) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private long randomItemId(int n) {
+        return itemIds.get(n % itemIds.size());
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.split("=");
+            weights.put(Endpoint.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        int sum = weights.values().stream().mapToInt(Integer::intValue).sum();
+        weights.replaceAll((endpoint, weight) -> weight * 100 / sum); //백분율로 맞춘다.
+        return weights;
+    }
+
+    private static Endpoint pick(Map<Endpoint, Integer> mix, int roll) {
+        Endpoint last = null;
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            last = entry.getKey();
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return last;
+            }
+        }
+        return last; //정수 나눗셈으로 남은 비율은 마지막 엔드포인트에 준다.
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * 스레드마다 따로 기록하고 마지막에 합치므로 동기화하지 않는다.
+     */
+    private static class Latencies {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long percentile(double p) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(p * size) - 1)];
+        }
+    }
+}
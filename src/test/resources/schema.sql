@@ -1,11 +1,21 @@
 -- 기본 SQL 스크립트를 사용해서 메모리 DB를 초기화.
 -- `src/test/resources/schema.sql` 경로와 파일 이름 모두 일치해야 한다.
+drop table if exists item_name_gram CASCADE;
 drop table if exists item CASCADE;
+drop sequence if exists item_seq;
+create sequence item_seq start with 1 increment by 50;
 create table item
 (
-    id bigint generated by default as identity,
+    id bigint not null,
     item_name varchar(10),
     price integer,
     quantity integer,
     primary key (id)
-);
\ No newline at end of file
+);
+create table item_name_gram
+(
+    gram varchar(3) not null,
+    item_id bigint not null,
+    primary key (gram, item_id)
+);
+create index item_name_gram_item_id on item_name_gram (item_id);